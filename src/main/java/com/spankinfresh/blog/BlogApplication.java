@@ -1,21 +1,40 @@
 package com.spankinfresh.blog;
 
+import com.spankinfresh.blog.api.AdmissionControlFilter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.hibernate.cache.jcache.ConfigSettings;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.context.ConfigurableApplicationContext;
 import org.springframework.context.annotation.Bean;
 import org.springframework.core.Ordered;
 import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
 import org.springframework.web.filter.CorsFilter;
 
+import javax.cache.Caching;
+import javax.cache.spi.CachingProvider;
+import java.net.URI;
 import java.util.Collections;
+import java.util.UUID;
 
 @SpringBootApplication
+// Caching advice wraps transactional advice, so evictions declared on a
+// @Transactional method happen after its commit
+@EnableCaching(order = Ordered.LOWEST_PRECEDENCE - 1)
 public class BlogApplication {
 
 	public static void main(String[] args) {
-		SpringApplication.run(BlogApplication.class, args);
+		ConfigurableApplicationContext context = SpringApplication.run(BlogApplication.class, args);
+		// Training starts for the AppCDS archive (mvn -Pappcds package) and
+		// StartupTimeTests stop as soon as the application is ready
+		if (context.getEnvironment().getProperty("blog.startup.exit-when-ready", Boolean.class, false)) {
+			System.exit(SpringApplication.exit(context));
+		}
 	}
 
 	@Bean
@@ -29,6 +48,9 @@ public class BlogApplication {
 		config.setAllowedMethods(Collections.singletonList("*"));
 		config.setAllowedHeaders(Collections.singletonList("*"));
 		config.addExposedHeader("Location");
+		config.addExposedHeader("Link");
+		config.addExposedHeader("ETag");
+		config.addExposedHeader("X-Total-Count");
 		source.registerCorsConfiguration("/api/**", config);
 		FilterRegistrationBean<CorsFilter> bean =
 				new FilterRegistrationBean<>(new CorsFilter(source));
@@ -36,4 +58,41 @@ public class BlogApplication {
 		return bean;
 	}
 
+	// Hibernate closes its JCache CacheManager when the EntityManagerFactory
+	// closes, and the provider hands out one manager per URI. Each factory
+	// gets a manager of its own, so regions are never shared between
+	// application contexts (and their databases) in one JVM, nor closed
+	// under one that is still running. Regions are still configured by
+	// application.conf, whatever the URI.
+	@Bean
+	public HibernatePropertiesCustomizer secondLevelCacheManager() {
+		return properties -> {
+			Object provider = properties.get(ConfigSettings.PROVIDER);
+			if (provider != null && !properties.containsKey(ConfigSettings.CACHE_MANAGER)) {
+				CachingProvider cachingProvider = Caching.getCachingProvider(provider.toString());
+				properties.put(ConfigSettings.CACHE_MANAGER, cachingProvider.getCacheManager(
+						URI.create("blog:hibernate:" + UUID.randomUUID()),
+						cachingProvider.getDefaultClassLoader()));
+			}
+		};
+	}
+
+	@Bean
+	@ConfigurationProperties("blog.admission")
+	public AdmissionControlFilter.Settings admissionSettings() {
+		return new AdmissionControlFilter.Settings();
+	}
+
+	// Runs after CORS so that preflights are never counted and rejections
+	// still carry the headers a browser needs to read them
+	@Bean
+	public FilterRegistrationBean<AdmissionControlFilter> admissionControlFilter(
+			AdmissionControlFilter.Settings admissionSettings, MeterRegistry meterRegistry) {
+		FilterRegistrationBean<AdmissionControlFilter> bean = new FilterRegistrationBean<>(
+				new AdmissionControlFilter(admissionSettings, meterRegistry));
+		bean.addUrlPatterns("/api/*");
+		bean.setOrder(Ordered.HIGHEST_PRECEDENCE + 1);
+		return bean;
+	}
+
 }
@@ -0,0 +1,158 @@
+package com.spankinfresh.blog;
+
+import com.spankinfresh.blog.api.ReadYourWritesFilter;
+import com.spankinfresh.blog.data.ReadWriteRoutingDataSource;
+import com.spankinfresh.blog.data.ReplicaReadJpaDialect;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Sends read-only transactions to read replicas when any are configured:
+ * <pre>
+ * blog.datasource.replicas[0].url=jdbc:postgresql://replica-1:5432/postgres
+ * blog.datasource.replicas[0].username=...
+ * blog.datasource.replicas[0].password=...
+ * blog.datasource.replicas[0].maximum-pool-size=10
+ * blog.datasource.read-your-writes-window=5s
+ * </pre>
+ * The primary keeps its usual {@code spring.datasource.*} and
+ * {@code spring.datasource.hikari.*} settings. Without
+ * replicas none of this is created and the single auto-configured pool is
+ * used as before.
+ */
+@Configuration
+@ConditionalOnProperty("blog.datasource.replicas[0].url")
+@EnableConfigurationProperties(ReadReplicaConfiguration.ReplicaProperties.class)
+public class ReadReplicaConfiguration {
+
+	// The only DataSource bean, so everything (JPA, JdbcTemplate, schema
+	// setup) goes through the router. Pools are built here rather than as
+	// beans of their own, which the DataSource initializer would trip over.
+	@Bean
+	public ReadWriteRoutingDataSource dataSource(DataSourceProperties dataSourceProperties,
+			ReplicaProperties replicaProperties, Environment environment,
+			MeterRegistry meterRegistry) {
+		HikariDataSource primary = dataSourceProperties.initializeDataSourceBuilder()
+				.type(HikariDataSource.class).build();
+		Binder.get(environment).bind("spring.datasource.hikari", Bindable.ofInstance(primary));
+		primary.setPoolName(ReadWriteRoutingDataSource.PRIMARY);
+		primary.setMetricRegistry(meterRegistry);
+		List<HikariDataSource> replicas = new ArrayList<>();
+		for (Replica replica : replicaProperties.getReplicas()) {
+			HikariDataSource dataSource = new HikariDataSource();
+			dataSource.setPoolName("replica-" + (replicas.size() + 1));
+			dataSource.setJdbcUrl(replica.getUrl());
+			dataSource.setUsername(replica.getUsername());
+			dataSource.setPassword(replica.getPassword());
+			dataSource.setMaximumPoolSize(replica.getMaximumPoolSize());
+			dataSource.setReadOnly(true);
+			dataSource.setMetricRegistry(meterRegistry);
+			replicas.add(dataSource);
+		}
+		return new ReadWriteRoutingDataSource(primary, replicas, meterRegistry);
+	}
+
+	@Bean
+	public FilterRegistrationBean<ReadYourWritesFilter> readYourWritesFilter(
+			ReplicaProperties properties) {
+		FilterRegistrationBean<ReadYourWritesFilter> bean = new FilterRegistrationBean<>(
+				new ReadYourWritesFilter(properties.getReadYourWritesWindow()));
+		bean.addUrlPatterns("/api/*");
+		return bean;
+	}
+
+	// Replica reads may use the Hibernate second-level cache but never fill it
+	@Bean
+	public static BeanPostProcessor replicaReadJpaDialect() {
+		return new BeanPostProcessor() {
+			@Override
+			public Object postProcessBeforeInitialization(Object bean, String beanName) {
+				if (bean instanceof LocalContainerEntityManagerFactoryBean) {
+					LocalContainerEntityManagerFactoryBean factoryBean =
+							(LocalContainerEntityManagerFactoryBean) bean;
+					factoryBean.setJpaDialect(new ReplicaReadJpaDialect(
+							factoryBean.getJpaVendorAdapter().getJpaDialect()));
+				}
+				return bean;
+			}
+		};
+	}
+
+	@ConfigurationProperties("blog.datasource")
+	public static class ReplicaProperties {
+		private List<Replica> replicas = new ArrayList<>();
+		// Longer than the replication lag the replicas are expected to have
+		private Duration readYourWritesWindow = Duration.ofSeconds(5);
+
+		public List<Replica> getReplicas() {
+			return replicas;
+		}
+
+		public void setReplicas(List<Replica> replicas) {
+			this.replicas = replicas;
+		}
+
+		public Duration getReadYourWritesWindow() {
+			return readYourWritesWindow;
+		}
+
+		public void setReadYourWritesWindow(Duration readYourWritesWindow) {
+			this.readYourWritesWindow = readYourWritesWindow;
+		}
+	}
+
+	public static class Replica {
+		private String url;
+		private String username;
+		private String password;
+		private int maximumPoolSize = 10;
+
+		public String getUrl() {
+			return url;
+		}
+
+		public void setUrl(String url) {
+			this.url = url;
+		}
+
+		public String getUsername() {
+			return username;
+		}
+
+		public void setUsername(String username) {
+			this.username = username;
+		}
+
+		public String getPassword() {
+			return password;
+		}
+
+		public void setPassword(String password) {
+			this.password = password;
+		}
+
+		public int getMaximumPoolSize() {
+			return maximumPoolSize;
+		}
+
+		public void setMaximumPoolSize(int maximumPoolSize) {
+			this.maximumPoolSize = maximumPoolSize;
+		}
+	}
+}
@@ -0,0 +1,22 @@
+package com.spankinfresh.blog.api;
+
+/** Content-coding negotiation for responses that keep a gzip copy ready. */
+final class AcceptEncoding {
+
+    private AcceptEncoding() {
+    }
+
+    /** Whether the header lists gzip with a non-zero quality. */
+    static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.trim().split(";");
+            if (parts[0].trim().equalsIgnoreCase("gzip")) {
+                return parts.length == 1 || !parts[1].replace(" ", "").matches("q=0(\\.0*)?");
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,335 @@
+package com.spankinfresh.blog.api;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Decides before any handler runs whether a request is served, so a burst
+ * is turned away in microseconds instead of queueing behind work that will
+ * miss its deadline anyway.
+ * <ul>
+ * <li>Each client (by remote address; set {@code server.forward-headers-strategy}
+ * behind a proxy) has a token bucket. An empty bucket answers 429 with
+ * Retry-After set to when the next token arrives.</li>
+ * <li>Article listings and lookups each have a concurrency limit that adapts
+ * with AIMD: it shrinks by 10% whenever a request takes longer than the
+ * route's latency threshold or was shed further down (503), and grows back
+ * by about one per limit's worth of fast requests, up to the configured
+ * maximum. Requests over the limit get 503 with Retry-After.</li>
+ * </ul>
+ * The limits sit in front of {@link RouteBulkheads}: they shed load while
+ * latency rises, before the bulkhead queues are full.
+ */
+public class AdmissionControlFilter extends OncePerRequestFilter {
+
+    public static final String METRIC_PREFIX = "blog.admission";
+
+    private static final AntPathMatcher PATHS = new AntPathMatcher();
+    // Checked in order; the long-lived /stream export has no latency to adapt to
+    private static final List<String> UNLIMITED = Arrays.asList(
+            "/api/articles/stream", "/api/articles/popular");
+    private static final List<String> LISTINGS = Arrays.asList(
+            "/api/articles", "/api/articles/category", "/api/articles/search");
+    private static final List<String> LOOKUPS = Arrays.asList(
+            "/api/articles/*", "/api/articles/*/content");
+
+    private final AdaptiveLimit listing;
+    private final AdaptiveLimit lookup;
+    private final Cache<String, TokenBucket> clients;
+    private final double requestsPerSecond;
+    private final int burst;
+    private final Counter rateLimited;
+
+    public AdmissionControlFilter(Settings settings, MeterRegistry meterRegistry) {
+        this.listing = new AdaptiveLimit("listing", settings.getListing(), meterRegistry);
+        this.lookup = new AdaptiveLimit("lookup", settings.getLookup(), meterRegistry);
+        this.requestsPerSecond = settings.getClient().getRequestsPerSecond();
+        this.burst = settings.getClient().getBurst();
+        // Idle clients' buckets are full again by the time they expire
+        this.clients = Caffeine.newBuilder()
+                .maximumSize(settings.getClient().getMaximumClients())
+                .expireAfterAccess(Math.max(1, (long) Math.ceil(burst / requestsPerSecond)),
+                        TimeUnit.SECONDS)
+                .build();
+        this.rateLimited = Counter.builder(METRIC_PREFIX + ".rate-limited")
+                .description("Requests turned away because their client's bucket was empty")
+                .register(meterRegistry);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        if (requestsPerSecond > 0) {
+            long waitNanos = clients.get(request.getRemoteAddr(),
+                    client -> new TokenBucket(requestsPerSecond, burst)).tryAcquire();
+            if (waitNanos > 0) {
+                rateLimited.increment();
+                reject(response, HttpStatus.TOO_MANY_REQUESTS, TimeUnit.NANOSECONDS.toSeconds(
+                        waitNanos + TimeUnit.SECONDS.toNanos(1) - 1));
+                return;
+            }
+        }
+        AdaptiveLimit limit = limitFor(request);
+        if (limit == null) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+        if (!limit.tryAcquire()) {
+            reject(response, HttpStatus.SERVICE_UNAVAILABLE, 1);
+            return;
+        }
+        long start = System.nanoTime();
+        boolean releasedLater = false;
+        try {
+            filterChain.doFilter(request, response);
+            if (request.isAsyncStarted()) {
+                // Bulkheaded reads finish on another thread; onComplete also
+                // follows a timeout or an error
+                request.getAsyncContext().addListener(new AsyncListener() {
+                    @Override
+                    public void onComplete(AsyncEvent event) {
+                        limit.release(System.nanoTime() - start, response.getStatus());
+                    }
+
+                    @Override
+                    public void onTimeout(AsyncEvent event) {
+                    }
+
+                    @Override
+                    public void onError(AsyncEvent event) {
+                    }
+
+                    @Override
+                    public void onStartAsync(AsyncEvent event) {
+                    }
+                });
+                releasedLater = true;
+            }
+        } finally {
+            if (!releasedLater) {
+                limit.release(System.nanoTime() - start, response.getStatus());
+            }
+        }
+    }
+
+    private AdaptiveLimit limitFor(HttpServletRequest request) {
+        if (!HttpMethod.GET.matches(request.getMethod())) {
+            return null;
+        }
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        if (matches(UNLIMITED, path)) {
+            return null;
+        }
+        if (matches(LISTINGS, path)) {
+            return listing;
+        }
+        return matches(LOOKUPS, path) ? lookup : null;
+    }
+
+    private static boolean matches(List<String> patterns, String path) {
+        for (String pattern : patterns) {
+            if (PATHS.match(pattern, path)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void reject(HttpServletResponse response, HttpStatus status,
+                               long retryAfterSeconds) {
+        response.setStatus(status.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(Math.max(1, retryAfterSeconds)));
+    }
+
+    /** AIMD concurrency limit for one route class. */
+    static final class AdaptiveLimit {
+        private static final double BACKOFF_RATIO = 0.9;
+        private final int maxLimit;
+        private final long latencyThresholdNanos;
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final Counter rejected;
+        private double limit;
+
+        AdaptiveLimit(String route, Route settings, MeterRegistry meterRegistry) {
+            this.maxLimit = settings.getMaxConcurrency();
+            this.latencyThresholdNanos = settings.getLatencyThreshold().toNanos();
+            this.limit = maxLimit;
+            Gauge.builder(METRIC_PREFIX + ".limit", this, AdaptiveLimit::getLimit)
+                    .description("Current adaptive concurrency limit")
+                    .tag("route", route).register(meterRegistry);
+            Gauge.builder(METRIC_PREFIX + ".in-flight", inFlight, AtomicInteger::get)
+                    .tag("route", route).register(meterRegistry);
+            this.rejected = Counter.builder(METRIC_PREFIX + ".rejected")
+                    .description("Requests turned away over the concurrency limit")
+                    .tag("route", route).register(meterRegistry);
+        }
+
+        boolean tryAcquire() {
+            int limit = getLimit();
+            while (true) {
+                int current = inFlight.get();
+                if (current >= limit) {
+                    rejected.increment();
+                    return false;
+                }
+                if (inFlight.compareAndSet(current, current + 1)) {
+                    return true;
+                }
+            }
+        }
+
+        void release(long latencyNanos, int status) {
+            inFlight.decrementAndGet();
+            synchronized (this) {
+                if (latencyNanos > latencyThresholdNanos
+                        || status == HttpStatus.SERVICE_UNAVAILABLE.value()) {
+                    limit = Math.max(1, limit * BACKOFF_RATIO);
+                } else {
+                    limit = Math.min(maxLimit, limit + 1 / limit);
+                }
+            }
+        }
+
+        synchronized int getLimit() {
+            return (int) limit;
+        }
+    }
+
+    /** Refilled continuously at the configured rate, up to the burst size. */
+    static final class TokenBucket {
+        private final double tokensPerNano;
+        private final int capacity;
+        private double tokens;
+        private long refilledAt = System.nanoTime();
+
+        TokenBucket(double tokensPerSecond, int capacity) {
+            this.tokensPerNano = tokensPerSecond / TimeUnit.SECONDS.toNanos(1);
+            this.capacity = capacity;
+            this.tokens = capacity;
+        }
+
+        /** 0 when a token was taken, otherwise nanoseconds until the next one. */
+        synchronized long tryAcquire() {
+            long now = System.nanoTime();
+            tokens = Math.min(capacity, tokens + (now - refilledAt) * tokensPerNano);
+            refilledAt = now;
+            if (tokens >= 1) {
+                tokens -= 1;
+                return 0;
+            }
+            return (long) Math.ceil((1 - tokens) / tokensPerNano);
+        }
+    }
+
+    /** Bound to {@code blog.admission.*}. */
+    public static class Settings {
+        private Route listing = new Route(32, Duration.ofSeconds(1));
+        private Route lookup = new Route(100, Duration.ofMillis(250));
+        private Client client = new Client();
+
+        public Route getListing() {
+            return listing;
+        }
+
+        public void setListing(Route listing) {
+            this.listing = listing;
+        }
+
+        public Route getLookup() {
+            return lookup;
+        }
+
+        public void setLookup(Route lookup) {
+            this.lookup = lookup;
+        }
+
+        public Client getClient() {
+            return client;
+        }
+
+        public void setClient(Client client) {
+            this.client = client;
+        }
+    }
+
+    public static class Route {
+        private int maxConcurrency;
+        private Duration latencyThreshold;
+
+        public Route() {
+        }
+
+        Route(int maxConcurrency, Duration latencyThreshold) {
+            this.maxConcurrency = maxConcurrency;
+            this.latencyThreshold = latencyThreshold;
+        }
+
+        public int getMaxConcurrency() {
+            return maxConcurrency;
+        }
+
+        public void setMaxConcurrency(int maxConcurrency) {
+            this.maxConcurrency = maxConcurrency;
+        }
+
+        public Duration getLatencyThreshold() {
+            return latencyThreshold;
+        }
+
+        public void setLatencyThreshold(Duration latencyThreshold) {
+            this.latencyThreshold = latencyThreshold;
+        }
+    }
+
+    public static class Client {
+        // 0 switches the per-client buckets off
+        private double requestsPerSecond = 200;
+        private int burst = 400;
+        private long maximumClients = 100_000;
+
+        public double getRequestsPerSecond() {
+            return requestsPerSecond;
+        }
+
+        public void setRequestsPerSecond(double requestsPerSecond) {
+            this.requestsPerSecond = requestsPerSecond;
+        }
+
+        public int getBurst() {
+            return burst;
+        }
+
+        public void setBurst(int burst) {
+            this.burst = burst;
+        }
+
+        public long getMaximumClients() {
+            return maximumClients;
+        }
+
+        public void setMaximumClients(long maximumClients) {
+            this.maximumClients = maximumClients;
+        }
+    }
+}
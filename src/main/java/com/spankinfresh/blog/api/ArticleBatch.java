@@ -0,0 +1,73 @@
+package com.spankinfresh.blog.api;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+import com.spankinfresh.blog.domain.BlogPost;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Body of POST /api/articles/batch: a JSON (or CBOR, Smile) array of
+ * articles. Elements are read one at a time and reading stops at the first
+ * one past {@link #MAX_SIZE}, so an oversized batch is refused before it has
+ * been turned into objects. Null elements are kept, to be reported at their
+ * index.
+ */
+@JsonDeserialize(using = ArticleBatch.Deserializer.class)
+final class ArticleBatch {
+
+    static final int MAX_SIZE = 1000;
+
+    private final List<BlogPost> blogPosts;
+
+    private ArticleBatch(List<BlogPost> blogPosts) {
+        this.blogPosts = blogPosts;
+    }
+
+    List<BlogPost> getBlogPosts() {
+        return blogPosts;
+    }
+
+    /** Thrown while reading a batch with more than {@link #MAX_SIZE} elements. */
+    static final class TooLargeException extends RuntimeException {
+        TooLargeException() {
+            super("More than " + MAX_SIZE + " articles in one batch");
+        }
+    }
+
+    static final class Deserializer extends StdDeserializer<ArticleBatch> {
+
+        Deserializer() {
+            super(ArticleBatch.class);
+        }
+
+        @Override
+        public ArticleBatch deserialize(JsonParser parser, DeserializationContext context)
+                throws IOException {
+            if (!parser.isExpectedStartArrayToken()) {
+                return (ArticleBatch) context.handleUnexpectedToken(ArticleBatch.class, parser);
+            }
+            JsonDeserializer<Object> element =
+                    context.findRootValueDeserializer(context.constructType(BlogPost.class));
+            List<BlogPost> blogPosts = new ArrayList<>();
+            for (JsonToken token = parser.nextToken(); token != JsonToken.END_ARRAY;
+                 token = parser.nextToken()) {
+                if (token == null) {
+                    return (ArticleBatch) context.handleUnexpectedToken(ArticleBatch.class, parser);
+                }
+                if (blogPosts.size() == MAX_SIZE) {
+                    throw new TooLargeException();
+                }
+                blogPosts.add(token == JsonToken.VALUE_NULL
+                        ? null : (BlogPost) element.deserialize(parser, context));
+            }
+            return new ArticleBatch(blogPosts);
+        }
+    }
+}
@@ -47,34 +47,70 @@ public class AuthorController {
             @PathVariable Long id) {
         Optional<Author> author = authorRepository.findById(id);
         if (author.isPresent()) {
+            HttpHeaders headers = new HttpHeaders();
+            headers.setETag(ETags.forVersion(author.get().getVersion()));
             return new ResponseEntity<>(
-                    Collections.singletonList(author.get()),HttpStatus.OK);
+                    Collections.singletonList(author.get()), headers, HttpStatus.OK);
         }
         return new ResponseEntity<>(HttpStatus.NOT_FOUND);
     }
 
     @PutMapping("{id}")
-    public ResponseEntity<Author> updateAuthorEntry(@PathVariable Long id,
-                                                    @Valid @RequestBody Author author) {
+    public ResponseEntity<Author> updateAuthorEntry(
+            @PathVariable Long id,
+            @Valid @RequestBody Author author,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
 
         if(author.getId() != id) {
             return new ResponseEntity<>(HttpStatus.CONFLICT);
         }
+        Long expectedVersion;
+        try {
+            expectedVersion = expectedVersion(ifMatch);
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(HttpStatus.PRECONDITION_FAILED);
+        }
 
-        if (authorRepository.existsById(id)) {
-            authorRepository.save(author);
+        int updated = expectedVersion == null
+                ? authorRepository.update(author)
+                : authorRepository.updateIfVersion(author, expectedVersion);
+        if (updated > 0) {
             return new ResponseEntity<>(HttpStatus.NO_CONTENT);
         }
-        return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        return notWritten(id, expectedVersion);
     }
 
     @DeleteMapping("{id}")
-    public ResponseEntity<Author> deleteAuthorEntryById(@PathVariable Long id) {
-        Optional<Author> author = authorRepository.findById(id);
-        if (author.isPresent()) {
-            authorRepository.delete(author.get());
+    public ResponseEntity<Author> deleteAuthorEntryById(
+            @PathVariable Long id,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        Long expectedVersion;
+        try {
+            expectedVersion = expectedVersion(ifMatch);
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(HttpStatus.PRECONDITION_FAILED);
+        }
+
+        int deleted = expectedVersion == null
+                ? authorRepository.remove(id)
+                : authorRepository.removeIfVersion(id, expectedVersion);
+        if (deleted > 0) {
             return new ResponseEntity<>(HttpStatus.NO_CONTENT);
         }
+        return notWritten(id, expectedVersion);
+    }
+
+    private static Long expectedVersion(String ifMatch) {
+        String tag = ETags.ifMatchTag(ifMatch);
+        return tag == null ? null : Long.valueOf(tag);
+    }
+
+    // Nothing matched: only a conditional write has to look again to tell
+    // a missing author apart from a stale version
+    private ResponseEntity<Author> notWritten(long id, Long expectedVersion) {
+        if (expectedVersion != null && authorRepository.existsById(id)) {
+            return new ResponseEntity<>(HttpStatus.PRECONDITION_FAILED);
+        }
         return new ResponseEntity<>(HttpStatus.NOT_FOUND);
     }
 
@@ -0,0 +1,49 @@
+package com.spankinfresh.blog.api;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.util.Map;
+
+/**
+ * Outcome of one element of a batch request, reported at the element's
+ * position in the submitted array.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BatchItemResult {
+
+    private final int index;
+    private final int status;
+    private final Long id;
+    private final Map<String, String> fieldErrors;
+
+    private BatchItemResult(int index, int status, Long id, Map<String, String> fieldErrors) {
+        this.index = index;
+        this.status = status;
+        this.id = id;
+        this.fieldErrors = fieldErrors;
+    }
+
+    static BatchItemResult created(int index, long id) {
+        return new BatchItemResult(index, 201, id, null);
+    }
+
+    static BatchItemResult rejected(int index, Map<String, String> fieldErrors) {
+        return new BatchItemResult(index, 400, null, fieldErrors);
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public Map<String, String> getFieldErrors() {
+        return fieldErrors;
+    }
+}
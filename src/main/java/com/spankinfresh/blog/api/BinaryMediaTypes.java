@@ -0,0 +1,43 @@
+package com.spankinfresh.blog.api;
+
+import org.springframework.http.MediaType;
+import org.springframework.util.StringUtils;
+
+import java.util.Arrays;
+import java.util.List;
+
+/** The binary formats served next to JSON (see BinaryFormatConfiguration). */
+final class BinaryMediaTypes {
+
+    static final String CBOR_VALUE = MediaType.APPLICATION_CBOR_VALUE;
+    static final MediaType CBOR = MediaType.APPLICATION_CBOR;
+    // Spring has no constant; this is what its Smile converter registers
+    static final String SMILE_VALUE = "application/x-jackson-smile";
+    static final MediaType SMILE = MediaType.parseMediaType(SMILE_VALUE);
+    // In order of preference, as the message converters are registered
+    private static final List<MediaType> ALL =
+            Arrays.asList(MediaType.APPLICATION_JSON, CBOR, SMILE);
+
+    private BinaryMediaTypes() {
+    }
+
+    /**
+     * The format a handler mapped with {@code produces = {JSON, CBOR, SMILE}}
+     * answers an Accept header with, for responses it serializes itself.
+     */
+    static MediaType negotiate(String accept) {
+        if (!StringUtils.hasText(accept)) {
+            return MediaType.APPLICATION_JSON;
+        }
+        List<MediaType> acceptable = MediaType.parseMediaTypes(accept);
+        MediaType.sortBySpecificityAndQuality(acceptable);
+        for (MediaType mediaType : acceptable) {
+            for (MediaType candidate : ALL) {
+                if (mediaType.isCompatibleWith(candidate)) {
+                    return candidate;
+                }
+            }
+        }
+        return MediaType.APPLICATION_JSON;
+    }
+}
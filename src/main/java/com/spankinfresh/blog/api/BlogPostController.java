@@ -1,28 +1,107 @@
 package com.spankinfresh.blog.api;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.spankinfresh.blog.data.ArticleViewCounts;
+import com.spankinfresh.blog.data.BlogPostJdbcTemplateRepository;
 import com.spankinfresh.blog.data.BlogPostRepository;
+import com.spankinfresh.blog.data.BlogPostSearchIndex;
+import com.spankinfresh.blog.data.BlogPostService;
+import com.spankinfresh.blog.data.PageCursor;
+import com.spankinfresh.blog.data.PopularArticle;
 import com.spankinfresh.blog.domain.BlogPost;
+import com.spankinfresh.blog.domain.ContentConverter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.context.request.async.WebAsyncTask;
 import org.springframework.web.util.UriComponents;
 import org.springframework.web.util.UriComponentsBuilder;
 
+import javax.servlet.http.HttpServletResponse;
+import javax.validation.ConstraintViolation;
 import javax.validation.Valid;
-import java.util.Collections;
-import java.util.Date;
-import java.util.List;
-import java.util.Optional;
+import javax.validation.Validator;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.*;
 
 @RestController
 @RequestMapping("/api/articles")
 public class BlogPostController {
 
+    public static final String NDJSON_VALUE = "application/x-ndjson";
+    public static final String TOTAL_COUNT_HEADER = "X-Total-Count";
+    static final String CONTENT_LENGTH_METRIC = "blog.article.content.length";
+    static final String CONTENT_DOWNLOAD_METRIC = "blog.article.content.download.size";
+
     private final BlogPostRepository blogPostRepository;
+    private final BlogPostService blogPostService;
+    private final BlogPostJdbcTemplateRepository blogPostJdbcTemplateRepository;
+    private final ObjectMapper objectMapper;
+    private final Validator validator;
+    private final BlogPostSearchIndex blogPostSearchIndex;
+    private final RouteBulkheads routeBulkheads;
+    private final ArticleViewCounts articleViewCounts;
+    private final SummarySnapshots summarySnapshots;
+    private final Duration streamTimeout;
+    private final DistributionSummary createdContentLength;
+    private final DistributionSummary updatedContentLength;
+    private final DistributionSummary readContentLength;
+    private final DistributionSummary gzipDownloadSize;
+    private final DistributionSummary identityDownloadSize;
 
-    public BlogPostController(BlogPostRepository blogPostRepository) {
+    public BlogPostController(BlogPostRepository blogPostRepository,
+                              BlogPostService blogPostService,
+                              BlogPostJdbcTemplateRepository blogPostJdbcTemplateRepository,
+                              ObjectMapper objectMapper,
+                              Validator validator,
+                              BlogPostSearchIndex blogPostSearchIndex,
+                              RouteBulkheads routeBulkheads,
+                              ArticleViewCounts articleViewCounts,
+                              SummarySnapshots summarySnapshots,
+                              @Value("${blog.stream.timeout:10m}") Duration streamTimeout,
+                              MeterRegistry meterRegistry) {
         this.blogPostRepository = blogPostRepository;
+        this.blogPostService = blogPostService;
+        this.blogPostJdbcTemplateRepository = blogPostJdbcTemplateRepository;
+        this.objectMapper = objectMapper;
+        this.validator = validator;
+        this.blogPostSearchIndex = blogPostSearchIndex;
+        this.routeBulkheads = routeBulkheads;
+        this.articleViewCounts = articleViewCounts;
+        this.summarySnapshots = summarySnapshots;
+        this.streamTimeout = streamTimeout;
+        this.createdContentLength = contentLength(meterRegistry, "create");
+        this.updatedContentLength = contentLength(meterRegistry, "update");
+        this.readContentLength = contentLength(meterRegistry, "read");
+        this.gzipDownloadSize = downloadSize(meterRegistry, "gzip");
+        this.identityDownloadSize = downloadSize(meterRegistry, "identity");
+    }
+
+    private static DistributionSummary contentLength(MeterRegistry registry, String operation) {
+        return DistributionSummary.builder(CONTENT_LENGTH_METRIC)
+                .description("Article content length in characters")
+                .baseUnit("characters")
+                .tag("operation", operation)
+                .register(registry);
+    }
+
+    private static DistributionSummary downloadSize(MeterRegistry registry, String encoding) {
+        return DistributionSummary.builder(CONTENT_DOWNLOAD_METRIC)
+                .description("Bytes sent by GET /api/articles/{id}/content")
+                .baseUnit("bytes")
+                .tag("encoding", encoding)
+                .register(registry);
     }
 
     @PostMapping
@@ -30,7 +109,10 @@ public class BlogPostController {
             @Valid @RequestBody BlogPost blogPost,
             UriComponentsBuilder uriComponentsBuilder) {
         blogPost.setDatePosted(new Date());
-        BlogPost savedItem = blogPostRepository.save(blogPost);
+        BlogPost savedItem = blogPostService.create(blogPost);
+        createdContentLength.record(savedItem.getContent().length());
+        blogPostSearchIndex.index(savedItem);
+        summarySnapshots.invalidate();
 
         UriComponents uriComponents = uriComponentsBuilder.path("/api/articles/{id}")
                 .buildAndExpand(savedItem.getId());
@@ -40,50 +122,351 @@ public class BlogPostController {
         return new ResponseEntity<>(savedItem, headers, HttpStatus.CREATED);
     }
 
+    @PostMapping("/batch")
+    public ResponseEntity<List<BatchItemResult>> createBlogEntries(
+            @RequestBody ArticleBatch batch) {
+        List<BlogPost> blogPosts = batch.getBlogPosts();
+        BatchItemResult[] results = new BatchItemResult[blogPosts.size()];
+        List<BlogPost> accepted = new ArrayList<>();
+        List<Integer> acceptedIndexes = new ArrayList<>();
+        Date datePosted = new Date();
+        for (int i = 0; i < blogPosts.size(); i++) {
+            BlogPost blogPost = blogPosts.get(i);
+            if (blogPost == null) {
+                // Reported the way the validator reports the object itself
+                results[i] = BatchItemResult.rejected(i,
+                        Collections.singletonMap("", "must not be null"));
+                continue;
+            }
+            Set<ConstraintViolation<BlogPost>> violations = validator.validate(blogPost);
+            if (violations.isEmpty()) {
+                blogPost.setId(0L);
+                blogPost.setDatePosted(datePosted);
+                accepted.add(blogPost);
+                acceptedIndexes.add(i);
+            } else {
+                HashMap<String, String> fieldErrors = new HashMap<>();
+                for (ConstraintViolation<BlogPost> violation : violations) {
+                    fieldErrors.put(violation.getPropertyPath().toString(),
+                            violation.getMessage());
+                }
+                results[i] = BatchItemResult.rejected(i, fieldErrors);
+            }
+        }
+        if (accepted.isEmpty()) {
+            return new ResponseEntity<>(Arrays.asList(results), HttpStatus.BAD_REQUEST);
+        }
+
+        Iterator<BlogPost> saved = blogPostService.createAll(accepted).iterator();
+        for (int index : acceptedIndexes) {
+            BlogPost savedItem = saved.next();
+            results[index] = BatchItemResult.created(index, savedItem.getId());
+            createdContentLength.record(savedItem.getContent().length());
+            blogPostSearchIndex.index(savedItem);
+        }
+        summarySnapshots.invalidate();
+
+        HttpStatus status = accepted.size() == blogPosts.size()
+                ? HttpStatus.CREATED : HttpStatus.MULTI_STATUS;
+        return new ResponseEntity<>(Arrays.asList(results), status);
+    }
+
+    @ExceptionHandler(ArticleBatch.TooLargeException.class)
+    public ResponseEntity<List<BatchItemResult>> batchTooLarge() {
+        return new ResponseEntity<>(HttpStatus.PAYLOAD_TOO_LARGE);
+    }
+
+    // The bulkheaded reads below return a ResponseEntity, or a WebAsyncTask
+    // producing one when blog.async.enabled is set (see RouteBulkheads)
     @GetMapping
-    public Iterable<BlogPost> getAllItems() {
-        return blogPostRepository.findAll();
+    public Object getAllItems(
+            @RequestParam(value = "limit", required = false) Integer limit,
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "fields", required = false) String fields) throws Exception {
+        return routeBulkheads.listing(() -> listItems(limit, cursor, fields));
+    }
+
+    private ResponseEntity<Iterable<?>> listItems(Integer limit, String cursor, String fields) {
+        Set<String> selectedFields;
+        PageCursor after;
+        try {
+            selectedFields = FieldProjection.parse(fields);
+            after = cursor == null ? null : PageCursor.decode(cursor);
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+        if (limit == null && cursor == null) {
+            Iterable<BlogPost> blogPosts = FieldProjection.includesContent(selectedFields)
+                    ? blogPostRepository.findAllWithBodies()
+                    : blogPostRepository.findAll();
+            return new ResponseEntity<>(withFields(blogPosts, selectedFields), HttpStatus.OK);
+        }
+        int pageSize = KeysetPage.boundedLimit(limit);
+        Pageable lookAhead = PageRequest.of(0, pageSize + 1);
+        List<BlogPost> rows = after == null
+                ? blogPostRepository.findFirstPage(lookAhead)
+                : blogPostRepository.findPageAfter(
+                        after.getDatePosted(), after.getId(), lookAhead);
+        HttpHeaders headers = new HttpHeaders();
+        return new ResponseEntity<>(
+                withFields(KeysetPage.trim(rows, pageSize, headers), selectedFields),
+                headers, HttpStatus.OK);
+    }
+
+    // Written straight to the response from an async task so that only the
+    // export gets the long blog.stream.timeout; other async requests keep
+    // the server default
+    @GetMapping(value = "/stream", produces = NDJSON_VALUE)
+    public WebAsyncTask<Void> streamAllItems(HttpServletResponse response) {
+        response.setContentType(NDJSON_VALUE);
+        return new WebAsyncTask<>(streamTimeout.toMillis(), () -> {
+            OutputStream outputStream = response.getOutputStream();
+            blogPostJdbcTemplateRepository.streamAllBlogPostings(blogPost -> {
+                try {
+                    outputStream.write(objectMapper.writeValueAsBytes(blogPost));
+                    outputStream.write('\n');
+                    outputStream.flush();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            return null;
+        });
+    }
+
+    @GetMapping("/search")
+    public Object searchItems(
+            @RequestParam("q") String query,
+            @RequestParam(value = "limit", required = false) Integer limit,
+            @RequestParam(value = "offset", defaultValue = "0") int offset) throws Exception {
+        return routeBulkheads.listing(() -> search(query, limit, offset));
+    }
+
+    private ResponseEntity<List<BlogPost>> search(String query, Integer limit, int offset) {
+        if (query.trim().isEmpty() || offset < 0) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+        List<Long> ranked = blogPostSearchIndex.search(query);
+        int pageSize = KeysetPage.boundedLimit(limit);
+        // Long math: offset + pageSize overflows for offsets near MAX_VALUE
+        List<Long> pageIds = ranked.subList(
+                Math.min(offset, ranked.size()),
+                (int) Math.min((long) offset + pageSize, ranked.size()));
+
+        Map<Long, BlogPost> found = new HashMap<>();
+        for (BlogPost blogPost : blogPostRepository.findAllById(pageIds)) {
+            found.put(blogPost.getId(), blogPost);
+        }
+        List<BlogPost> page = new ArrayList<>();
+        for (Long id : pageIds) {
+            if (found.containsKey(id)) {
+                page.add(found.get(id));
+            }
+        }
+        HttpHeaders headers = new HttpHeaders();
+        headers.add(TOTAL_COUNT_HEADER, String.valueOf(ranked.size()));
+        return new ResponseEntity<>(page, headers, HttpStatus.OK);
+    }
+
+    // Served from memory, refreshed on every view count flush
+    @GetMapping("/popular")
+    public ResponseEntity<List<PopularArticle>> getMostRead(
+            @RequestParam(value = "limit", required = false) Integer limit) {
+        int size = articleViewCounts.getMostReadSize();
+        return new ResponseEntity<>(articleViewCounts.mostRead(
+                limit == null ? size : Math.max(1, Math.min(limit, size))), HttpStatus.OK);
     }
 
     @GetMapping("{id}")
-    public ResponseEntity<Iterable<BlogPost>> getItemById(
-            @PathVariable Long id) {
+    public Object getItemById(
+            @PathVariable Long id,
+            @RequestParam(value = "fields", required = false) String fields,
+            WebRequest webRequest) throws Exception {
+        return routeBulkheads.lookup(() -> findItem(id, fields, webRequest));
+    }
+
+    private ResponseEntity<Iterable<?>> findItem(Long id, String fields, WebRequest webRequest) {
+        Set<String> selectedFields;
+        try {
+            selectedFields = FieldProjection.parse(fields);
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+        // Revalidation only needs the stored versions, not the article itself
+        if (webRequest.getHeader(HttpHeaders.IF_NONE_MATCH) != null) {
+            String eTag = ETags.forArticleRows(blogPostRepository.findVersionsById(id));
+            if (eTag != null && webRequest.checkNotModified(eTag)) {
+                articleViewCounts.recordView(id);
+                return null;
+            }
+        }
         Optional<BlogPost> blogPost = blogPostRepository.findById(id);
         if (blogPost.isPresent()) {
+            articleViewCounts.recordView(id);
+            HttpHeaders headers = new HttpHeaders();
+            headers.setETag(ETags.forArticle(blogPost.get()));
+            if (selectedFields == null || selectedFields.contains("content")) {
+                readContentLength.record(blogPost.get().getContent().length());
+            }
             return new ResponseEntity<>(
-                    Collections.singletonList(blogPost.get()),HttpStatus.OK);
+                    withFields(Collections.singletonList(blogPost.get()), selectedFields),
+                    headers, HttpStatus.OK);
         }
         return new ResponseEntity<>(HttpStatus.NOT_FOUND);
     }
 
+    @GetMapping(value = "{id}/content", produces = "text/plain;charset=UTF-8")
+    public Object getContentById(
+            @PathVariable Long id,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false)
+                    String acceptEncoding) throws Exception {
+        return routeBulkheads.lookup(() -> findContent(id, acceptEncoding));
+    }
+
+    private ResponseEntity<byte[]> findContent(Long id, String acceptEncoding) {
+        byte[] stored = blogPostJdbcTemplateRepository.getStoredContent(id);
+        if (stored == null) {
+            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        }
+        HttpHeaders headers = new HttpHeaders();
+        headers.setVary(Collections.singletonList(HttpHeaders.ACCEPT_ENCODING));
+        if (ContentConverter.isGzip(stored) && AcceptEncoding.acceptsGzip(acceptEncoding)) {
+            // Already compressed at rest: pass the stored bytes straight through
+            headers.set(HttpHeaders.CONTENT_ENCODING, "gzip");
+            gzipDownloadSize.record(stored.length);
+            return new ResponseEntity<>(stored, headers, HttpStatus.OK);
+        }
+        byte[] content = ContentConverter.decode(stored).getBytes(StandardCharsets.UTF_8);
+        identityDownloadSize.record(content.length);
+        return new ResponseEntity<>(content, headers, HttpStatus.OK);
+    }
+
     @PutMapping("{id}")
-    public ResponseEntity<BlogPost> updateBlogEntry(@PathVariable Long id,
-                                                    @Valid @RequestBody BlogPost blogEntry) {
+    public ResponseEntity<BlogPost> updateBlogEntry(
+            @PathVariable Long id,
+            @Valid @RequestBody BlogPost blogEntry,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
 
         if(blogEntry.getId() != id) {
             return new ResponseEntity<>(HttpStatus.CONFLICT);
         }
+        Long expectedVersion = null;
+        long expectedAuthorVersion = BlogPostRepository.NO_AUTHOR_VERSION;
+        try {
+            String expectedTag = ETags.ifMatchTag(ifMatch);
+            if (expectedTag != null) {
+                expectedVersion = ETags.version(expectedTag);
+                expectedAuthorVersion = ETags.authorVersion(expectedTag);
+            }
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(HttpStatus.PRECONDITION_FAILED);
+        }
 
-        if (blogPostRepository.existsById(id)) {
-            blogPostRepository.save(blogEntry);
-            return new ResponseEntity<>(HttpStatus.NO_CONTENT);
+        BlogPostService.Outcome outcome = blogPostService.update(
+                blogEntry, expectedVersion, expectedAuthorVersion);
+        if (outcome != BlogPostService.Outcome.WRITTEN) {
+            return new ResponseEntity<>(status(outcome));
         }
-        return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        updatedContentLength.record(blogEntry.getContent().length());
+        blogPostSearchIndex.index(blogEntry);
+        summarySnapshots.invalidate();
+        // The update returned both versions along with the row it replaced
+        HttpHeaders headers = new HttpHeaders();
+        headers.setETag(ETags.forArticle(blogEntry));
+        return new ResponseEntity<>(headers, HttpStatus.NO_CONTENT);
     }
 
     @DeleteMapping("{id}")
-    public ResponseEntity<BlogPost> deleteBlogEntryById(@PathVariable Long id) {
-        Optional<BlogPost> blogEntry = blogPostRepository.findById(id);
-        if (blogEntry.isPresent()) {
-            blogPostRepository.delete(blogEntry.get());
-            return new ResponseEntity<>(HttpStatus.NO_CONTENT);
+    public ResponseEntity<BlogPost> deleteBlogEntryById(
+            @PathVariable Long id,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        Long expectedVersion = null;
+        long expectedAuthorVersion = BlogPostRepository.NO_AUTHOR_VERSION;
+        try {
+            String expectedTag = ETags.ifMatchTag(ifMatch);
+            if (expectedTag != null) {
+                expectedVersion = ETags.version(expectedTag);
+                expectedAuthorVersion = ETags.authorVersion(expectedTag);
+            }
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(HttpStatus.PRECONDITION_FAILED);
         }
-        return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        BlogPostService.Outcome outcome = blogPostService.delete(
+                id, expectedVersion, expectedAuthorVersion);
+        if (outcome != BlogPostService.Outcome.WRITTEN) {
+            return new ResponseEntity<>(status(outcome));
+        }
+        blogPostSearchIndex.remove(id);
+        articleViewCounts.remove(id);
+        summarySnapshots.invalidate();
+        return new ResponseEntity<>(HttpStatus.NO_CONTENT);
+    }
+
+    private static HttpStatus status(BlogPostService.Outcome outcome) {
+        return outcome == BlogPostService.Outcome.CHANGED
+                ? HttpStatus.PRECONDITION_FAILED : HttpStatus.NOT_FOUND;
     }
 
     @GetMapping("/category")
-    List<BlogPost> getAllBlogPostsByCategory(
-            @RequestParam("categoryName") String categoryName){
-        return blogPostRepository.findByCategoryOrderByDatePostedDesc(categoryName);
+    Object getAllBlogPostsByCategory(
+            @RequestParam("categoryName") String categoryName,
+            @RequestParam(value = "limit", required = false) Integer limit,
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "fields", required = false) String fields,
+            WebRequest webRequest) throws Exception {
+        return routeBulkheads.listing(() ->
+                getBlogPostsByCategory(categoryName, limit, cursor, fields, webRequest));
+    }
+
+    private ResponseEntity<Iterable<?>> getBlogPostsByCategory(
+            String categoryName, Integer limit, String cursor, String fields,
+            WebRequest webRequest) {
+        Set<String> selectedFields;
+        try {
+            selectedFields = FieldProjection.parse(fields);
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+        if (limit != null || cursor != null) {
+            return getBlogPostsByCategoryPage(categoryName, limit, cursor, selectedFields);
+        }
+        if (webRequest.getHeader(HttpHeaders.IF_NONE_MATCH) != null) {
+            String eTag = ETags.forArticleVersions(
+                    blogPostRepository.findVersionsByCategory(categoryName));
+            if (webRequest.checkNotModified(eTag)) {
+                return null;
+            }
+        }
+        List<BlogPost> blogPosts = FieldProjection.includesContent(selectedFields)
+                ? blogPostRepository.findWithBodiesByCategoryOrderByDatePostedDesc(categoryName)
+                : blogPostRepository.findByCategoryOrderByDatePostedDesc(categoryName);
+        HttpHeaders headers = new HttpHeaders();
+        headers.setETag(ETags.forArticles(blogPosts));
+        return new ResponseEntity<>(
+                withFields(blogPosts, selectedFields), headers, HttpStatus.OK);
+    }
+
+    private ResponseEntity<Iterable<?>> getBlogPostsByCategoryPage(
+            String categoryName, Integer limit, String cursor, Set<String> selectedFields) {
+        PageCursor after;
+        try {
+            after = cursor == null ? null : PageCursor.decode(cursor);
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+        int pageSize = KeysetPage.boundedLimit(limit);
+        Pageable lookAhead = PageRequest.of(0, pageSize + 1);
+        List<BlogPost> rows = after == null
+                ? blogPostRepository.findFirstCategoryPage(categoryName, lookAhead)
+                : blogPostRepository.findCategoryPageAfter(categoryName,
+                        after.getDatePosted(), after.getId(), lookAhead);
+        HttpHeaders headers = new HttpHeaders();
+        List<BlogPost> page = KeysetPage.trim(rows, pageSize, headers);
+        headers.setETag(ETags.forArticles(page));
+        return new ResponseEntity<>(withFields(page, selectedFields), headers, HttpStatus.OK);
+    }
+
+    private static Iterable<?> withFields(Iterable<BlogPost> blogPosts, Set<String> fields) {
+        return fields == null ? blogPosts : FieldProjection.project(blogPosts, fields);
     }
 }
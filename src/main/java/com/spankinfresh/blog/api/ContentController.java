@@ -1,9 +1,15 @@
 package com.spankinfresh.blog.api;
 
 import com.spankinfresh.blog.data.BlogPostJdbcTemplateRepository;
+import com.spankinfresh.blog.data.PageCursor;
 import com.spankinfresh.blog.domain.BlogPost;
-import com.spankinfresh.blog.domain.Category;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import java.util.List;
@@ -12,18 +18,73 @@ import java.util.List;
 public class ContentController {
 
     private final BlogPostJdbcTemplateRepository blogPostJdbcTemplateRepository;
+    private final SummarySnapshots summarySnapshots;
 
-    public ContentController(BlogPostJdbcTemplateRepository blogPostJdbcTemplateRepository) {
+    public ContentController(BlogPostJdbcTemplateRepository blogPostJdbcTemplateRepository,
+                             SummarySnapshots summarySnapshots) {
         this.blogPostJdbcTemplateRepository = blogPostJdbcTemplateRepository;
+        this.summarySnapshots = summarySnapshots;
     }
 
-    @GetMapping("/api/summary/articles")
-    public List<BlogPost> getAll() {
-        return blogPostJdbcTemplateRepository.getAllBlogPostingsOmittingContent();
+    @GetMapping(value = "/api/summary/articles", produces = {MediaType.APPLICATION_JSON_VALUE,
+            BinaryMediaTypes.CBOR_VALUE, BinaryMediaTypes.SMILE_VALUE})
+    public ResponseEntity<?> getAll(
+            @RequestParam(value = "limit", required = false) Integer limit,
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false)
+                    String acceptEncoding) {
+        return summaries(BinaryMediaTypes.negotiate(accept), limit, cursor, acceptEncoding);
     }
 
-    @GetMapping("/api/categories")
-    List <Category> getAllCategories(){
-        return blogPostJdbcTemplateRepository.getCategoryList();
+    // Pages go through the message converter that matches the Accept header
+    private ResponseEntity<?> summaries(MediaType mediaType, Integer limit, String cursor,
+                                        String acceptEncoding) {
+        // Already serialized; the ETag still lets 304s skip the body
+        if (limit == null && cursor == null) {
+            return summarySnapshots.summaries(mediaType, acceptEncoding);
+        }
+        PageCursor after;
+        try {
+            after = cursor == null ? null : PageCursor.decode(cursor);
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+        int pageSize = KeysetPage.boundedLimit(limit);
+        List<BlogPost> rows = blogPostJdbcTemplateRepository
+                .getBlogPostingsOmittingContent(after, pageSize + 1);
+        HttpHeaders headers = new HttpHeaders();
+        List<BlogPost> page = KeysetPage.trim(rows, pageSize, headers);
+        headers.setETag(ETags.forSummaries(page));
+        return new ResponseEntity<>(page, headers, HttpStatus.OK);
+    }
+
+    @GetMapping("/api/summary/articles/category")
+    public ResponseEntity<List<BlogPost>> getAllByCategory(
+            @RequestParam("categoryName") String categoryName,
+            @RequestParam(value = "limit", required = false) Integer limit,
+            @RequestParam(value = "cursor", required = false) String cursor) {
+        PageCursor after;
+        try {
+            after = cursor == null ? null : PageCursor.decode(cursor);
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+        int pageSize = KeysetPage.boundedLimit(limit);
+        List<BlogPost> rows = blogPostJdbcTemplateRepository
+                .getCategoryPostingsOmittingContent(categoryName, after, pageSize + 1);
+        HttpHeaders headers = new HttpHeaders();
+        List<BlogPost> page = KeysetPage.trim(rows, pageSize, headers);
+        headers.setETag(ETags.forSummaries(page));
+        return new ResponseEntity<>(page, headers, HttpStatus.OK);
+    }
+
+    @GetMapping(value = "/api/categories", produces = {MediaType.APPLICATION_JSON_VALUE,
+            BinaryMediaTypes.CBOR_VALUE, BinaryMediaTypes.SMILE_VALUE})
+    ResponseEntity<byte[]> getAllCategories(
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false)
+                    String acceptEncoding) {
+        return summarySnapshots.categories(BinaryMediaTypes.negotiate(accept), acceptEncoding);
     }
 }
@@ -0,0 +1,56 @@
+package com.spankinfresh.blog.api;
+
+import com.spankinfresh.blog.data.BlogPostJdbcTemplateRepository;
+import com.spankinfresh.blog.data.PageCursor;
+import com.spankinfresh.blog.domain.BlogPost;
+import com.spankinfresh.blog.domain.Category;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Streaming variants of the {@link ContentController} reads, selected with
+ * {@code Accept: application/stream+json}. Each element is written as one
+ * line of JSON as soon as it is read; the request thread is released once
+ * the handler returns, and rows are only pulled from the database as the
+ * client keeps up.
+ */
+@RestController
+public class ContentStreamController {
+
+    private final BlogPostJdbcTemplateRepository blogPostJdbcTemplateRepository;
+
+    public ContentStreamController(BlogPostJdbcTemplateRepository blogPostJdbcTemplateRepository) {
+        this.blogPostJdbcTemplateRepository = blogPostJdbcTemplateRepository;
+    }
+
+    /**
+     * Every summary newest first, or at most {@code limit} of them (capped
+     * like the paged listings), starting after {@code cursor} when given.
+     */
+    @GetMapping(value = "/api/summary/articles", produces = MediaType.APPLICATION_STREAM_JSON_VALUE)
+    public ResponseEntity<Flux<BlogPost>> streamAll(
+            @RequestParam(value = "limit", required = false) Integer limit,
+            @RequestParam(value = "cursor", required = false) String cursor) {
+        PageCursor after;
+        try {
+            after = cursor == null ? null : PageCursor.decode(cursor);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        int rows = limit == null ? Integer.MAX_VALUE : KeysetPage.boundedLimit(limit);
+        return ResponseEntity.ok(
+                blogPostJdbcTemplateRepository.fluxBlogPostingsOmittingContent(after, rows));
+    }
+
+    // The category list is cached, so this streams from memory when it can
+    @GetMapping(value = "/api/categories", produces = MediaType.APPLICATION_STREAM_JSON_VALUE)
+    public Flux<Category> streamAllCategories() {
+        return Flux.defer(() -> Flux.fromIterable(blogPostJdbcTemplateRepository.getCategoryList()))
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+}
@@ -0,0 +1,134 @@
+package com.spankinfresh.blog.api;
+
+import com.spankinfresh.blog.data.BlogPostRepository;
+import com.spankinfresh.blog.domain.BlogPost;
+import org.springframework.util.DigestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Strong entity tags for article and author responses. Single articles use
+ * their version followed by their author's version: every write of a post
+ * bumps the former, and an author edit has to change the tag of every
+ * article showing that author. Lists combine the same per-row state in
+ * order. Authors use their version.
+ */
+final class ETags {
+
+    private ETags() {
+    }
+
+    static String forArticle(long version, Long authorVersion) {
+        return "\"" + version + (authorVersion == null ? "" : "-" + authorVersion) + "\"";
+    }
+
+    static String forArticle(BlogPost blogPost) {
+        return forArticle(blogPost.getVersion(), authorVersion(blogPost));
+    }
+
+    /**
+     * Same as {@link #forArticle} for rows of {@code (version, authorVersion)},
+     * or null when there is no row.
+     */
+    static String forArticleRows(List<Object[]> versionRows) {
+        if (versionRows.isEmpty()) {
+            return null;
+        }
+        Object[] row = versionRows.get(0);
+        return forArticle(((Number) row[0]).longValue(),
+                row[1] == null ? null : ((Number) row[1]).longValue());
+    }
+
+    /**
+     * The article version named by an article tag from {@link #ifMatchTag}.
+     *
+     * @throws IllegalArgumentException when the version is not a number
+     */
+    static long version(String articleTag) {
+        int separator = articleTag.indexOf('-');
+        return Long.parseLong(separator < 0 ? articleTag : articleTag.substring(0, separator));
+    }
+
+    /**
+     * The author version named by an article tag from {@link #ifMatchTag},
+     * or {@link BlogPostRepository#NO_AUTHOR_VERSION} for an article without
+     * an author.
+     *
+     * @throws IllegalArgumentException when the version is not a number
+     */
+    static long authorVersion(String articleTag) {
+        int separator = articleTag.indexOf('-');
+        return separator < 0 ? BlogPostRepository.NO_AUTHOR_VERSION
+                : Long.parseLong(articleTag.substring(separator + 1));
+    }
+
+    static String forVersion(long version) {
+        return "\"" + version + "\"";
+    }
+
+    /**
+     * The opaque tag of an If-Match header naming a single strong entity
+     * tag, or null when the header is absent or "*", which any current
+     * representation satisfies.
+     *
+     * @throws IllegalArgumentException for weak tags, lists and malformed
+     *                                  values, none of which can match
+     */
+    static String ifMatchTag(String ifMatch) {
+        if (ifMatch == null || ifMatch.trim().equals("*")) {
+            return null;
+        }
+        String tag = ifMatch.trim();
+        if (tag.length() < 2 || tag.charAt(0) != '"'
+                || tag.indexOf('"', 1) != tag.length() - 1) {
+            throw new IllegalArgumentException("Not a single strong entity tag: " + ifMatch);
+        }
+        return tag.substring(1, tag.length() - 1);
+    }
+
+    static String forArticles(List<BlogPost> blogPosts) {
+        StringBuilder state = new StringBuilder();
+        for (BlogPost blogPost : blogPosts) {
+            state.append(blogPost.getId()).append(':')
+                    .append(blogPost.getVersion()).append(':')
+                    .append(authorVersion(blogPost)).append(';');
+        }
+        return digest(state);
+    }
+
+    /**
+     * Same as {@link #forArticles} for rows of
+     * {@code (id, version, authorVersion)}.
+     */
+    static String forArticleVersions(List<Object[]> idAndVersionRows) {
+        StringBuilder state = new StringBuilder();
+        for (Object[] row : idAndVersionRows) {
+            state.append(row[0]).append(':').append(row[1]).append(':')
+                    .append(row[2]).append(';');
+        }
+        return digest(state);
+    }
+
+    static String forSummaries(List<BlogPost> summaries) {
+        StringBuilder state = new StringBuilder();
+        for (BlogPost blogPost : summaries) {
+            state.append(blogPost.getId()).append('\u0000')
+                    .append(blogPost.getTitle()).append('\u0000')
+                    .append(blogPost.getCategory()).append('\u0000')
+                    .append(blogPost.getDatePosted() == null
+                            ? "" : blogPost.getDatePosted().getTime())
+                    .append(';');
+        }
+        return digest(state);
+    }
+
+    private static Long authorVersion(BlogPost blogPost) {
+        return blogPost.getAuthor() == null ? null : blogPost.getAuthor().getVersion();
+    }
+
+    private static String digest(StringBuilder state) {
+        return "\"" + DigestUtils.md5DigestAsHex(
+                state.toString().getBytes(StandardCharsets.UTF_8)) + "\"";
+    }
+}
@@ -0,0 +1,80 @@
+package com.spankinfresh.blog.api;
+
+import com.spankinfresh.blog.domain.BlogPost;
+
+import java.util.*;
+
+/**
+ * Support for the {@code fields} request parameter, e.g.
+ * {@code ?fields=id,title,datePosted}. Only the named properties are read
+ * from each post, so leaving out {@code content} keeps its lazy body from
+ * ever being loaded.
+ */
+final class FieldProjection {
+
+    private static final List<String> FIELDS = Arrays.asList(
+            "id", "author", "category", "datePosted", "title", "content");
+
+    private FieldProjection() {
+    }
+
+    /**
+     * Returns null when no projection was requested.
+     *
+     * @throws IllegalArgumentException for names that are not BlogPost fields
+     */
+    static Set<String> parse(String fields) {
+        if (fields == null) {
+            return null;
+        }
+        Set<String> selected = new HashSet<>();
+        for (String field : fields.split(",")) {
+            String name = field.trim();
+            if (!FIELDS.contains(name)) {
+                throw new IllegalArgumentException("Unknown field: " + name);
+            }
+            selected.add(name);
+        }
+        return selected;
+    }
+
+    /** Whether posts are served with their content under this projection. */
+    static boolean includesContent(Set<String> fields) {
+        return fields == null || fields.contains("content");
+    }
+
+    static List<Map<String, Object>> project(Iterable<BlogPost> blogPosts, Set<String> fields) {
+        List<Map<String, Object>> projected = new ArrayList<>();
+        for (BlogPost blogPost : blogPosts) {
+            projected.add(project(blogPost, fields));
+        }
+        return projected;
+    }
+
+    static Map<String, Object> project(BlogPost blogPost, Set<String> fields) {
+        Map<String, Object> values = new LinkedHashMap<>();
+        for (String field : FIELDS) {
+            if (fields.contains(field)) {
+                values.put(field, read(blogPost, field));
+            }
+        }
+        return values;
+    }
+
+    private static Object read(BlogPost blogPost, String field) {
+        switch (field) {
+            case "id":
+                return blogPost.getId();
+            case "author":
+                return blogPost.getAuthor();
+            case "category":
+                return blogPost.getCategory();
+            case "datePosted":
+                return blogPost.getDatePosted();
+            case "title":
+                return blogPost.getTitle();
+            default:
+                return blogPost.getContent();
+        }
+    }
+}
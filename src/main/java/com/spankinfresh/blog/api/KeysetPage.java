@@ -0,0 +1,46 @@
+package com.spankinfresh.blog.api;
+
+import com.spankinfresh.blog.data.PageCursor;
+import com.spankinfresh.blog.domain.BlogPost;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+
+import java.util.List;
+
+/**
+ * Shared handling of the {@code limit} / {@code cursor} request parameters
+ * used by the paged article listings.
+ */
+final class KeysetPage {
+
+    static final int DEFAULT_LIMIT = 20;
+    static final int MAX_LIMIT = 100;
+
+    private KeysetPage() {
+    }
+
+    static int boundedLimit(Integer limit) {
+        if (limit == null) {
+            return DEFAULT_LIMIT;
+        }
+        return Math.max(1, Math.min(limit, MAX_LIMIT));
+    }
+
+    /**
+     * Trims the one look-ahead row fetched beyond {@code limit} and, when it
+     * was present, adds a {@code Link: <...>; rel="next"} header pointing at
+     * the following page.
+     */
+    static List<BlogPost> trim(List<BlogPost> rows, int limit, HttpHeaders headers) {
+        if (rows.size() <= limit) {
+            return rows;
+        }
+        List<BlogPost> page = rows.subList(0, limit);
+        String next = ServletUriComponentsBuilder.fromCurrentRequest()
+                .replaceQueryParam("cursor", PageCursor.after(page.get(limit - 1)).encode())
+                .replaceQueryParam("limit", limit)
+                .build().toUriString();
+        headers.add(HttpHeaders.LINK, "<" + next + ">; rel=\"next\"");
+        return page;
+    }
+}
@@ -0,0 +1,69 @@
+package com.spankinfresh.blog.api;
+
+import com.spankinfresh.blog.data.ReadWriteRouting;
+import org.springframework.http.HttpMethod;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.WebUtils;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.time.Duration;
+
+/**
+ * Keeps a client reading from the primary right after it writes, so it
+ * never misses its own write on a replica that has not caught up yet.
+ * Writes themselves, including the lookups they make first, always read
+ * from the primary. A write also sets a {@value #COOKIE_NAME} cookie holding
+ * the end of the pinned window, which keeps working across instances.
+ */
+public class ReadYourWritesFilter extends OncePerRequestFilter {
+
+    public static final String COOKIE_NAME = "blog-primary-until";
+
+    private final Duration window;
+
+    public ReadYourWritesFilter(Duration window) {
+        this.window = window;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        if (isWrite(request)) {
+            request.setAttribute(ReadWriteRouting.PRIMARY_REQUIRED_ATTRIBUTE, Boolean.TRUE);
+            // Set before the response is committed; a failed write only
+            // costs the client a few seconds of primary reads
+            Cookie cookie = new Cookie(COOKIE_NAME,
+                    String.valueOf(System.currentTimeMillis() + window.toMillis()));
+            cookie.setPath("/");
+            cookie.setHttpOnly(true);
+            cookie.setMaxAge((int) Math.max(1, (window.toMillis() + 999) / 1000));
+            response.addCookie(cookie);
+        } else if (wroteRecently(request)) {
+            request.setAttribute(ReadWriteRouting.PRIMARY_REQUIRED_ATTRIBUTE, Boolean.TRUE);
+        }
+        filterChain.doFilter(request, response);
+    }
+
+    private static boolean isWrite(HttpServletRequest request) {
+        HttpMethod method = HttpMethod.resolve(request.getMethod());
+        return method != HttpMethod.GET && method != HttpMethod.HEAD
+                && method != HttpMethod.OPTIONS && method != HttpMethod.TRACE;
+    }
+
+    private static boolean wroteRecently(HttpServletRequest request) {
+        Cookie cookie = WebUtils.getCookie(request, COOKIE_NAME);
+        if (cookie == null) {
+            return false;
+        }
+        try {
+            return Long.parseLong(cookie.getValue()) > System.currentTimeMillis();
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package com.spankinfresh.blog.api;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.async.WebAsyncTask;
+
+import java.io.InterruptedIOException;
+import java.time.Duration;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * With blog.async.enabled, runs article reads off the Tomcat request
+ * threads, on a separate fixed pool per route class, so a burst of slow
+ * listings can only exhaust its own threads and never stalls single-article
+ * lookups. Each bulkhead admits at most threads + queue-capacity requests;
+ * beyond that, and when a request outlives its timeout, the client gets 503
+ * with Retry-After. Otherwise reads run on the request thread as before.
+ * <p>
+ * Admitted reads are returned as a {@link WebAsyncTask}, so Spring MVC
+ * carries the open-in-view EntityManager over to the pool thread and back
+ * for serialization.
+ */
+@Component
+public class RouteBulkheads implements DisposableBean {
+
+    public static final String METRIC_PREFIX = "blog.bulkhead";
+
+    // Both null unless blog.async.enabled
+    private final Bulkhead listing;
+    private final Bulkhead lookup;
+
+    public RouteBulkheads(
+            @Value("${blog.async.enabled:false}") boolean enabled,
+            @Value("${blog.async.listing.threads:4}") int listingThreads,
+            @Value("${blog.async.listing.queue-capacity:50}") int listingQueueCapacity,
+            @Value("${blog.async.listing.timeout:10s}") Duration listingTimeout,
+            @Value("${blog.async.lookup.threads:6}") int lookupThreads,
+            @Value("${blog.async.lookup.queue-capacity:100}") int lookupQueueCapacity,
+            @Value("${blog.async.lookup.timeout:2s}") Duration lookupTimeout,
+            MeterRegistry meterRegistry) {
+        this.listing = enabled ? new Bulkhead("listing", listingThreads, listingQueueCapacity,
+                listingTimeout, meterRegistry) : null;
+        this.lookup = enabled ? new Bulkhead("lookup", lookupThreads, lookupQueueCapacity,
+                lookupTimeout, meterRegistry) : null;
+    }
+
+    /**
+     * Article listings, category pages and search. Returns the response, or
+     * a WebAsyncTask producing it.
+     */
+    public <T> Object listing(Callable<ResponseEntity<T>> work) throws Exception {
+        return listing == null ? work.call() : listing.submit(work);
+    }
+
+    /** Single-article reads, returned as by {@link #listing}. */
+    public <T> Object lookup(Callable<ResponseEntity<T>> work) throws Exception {
+        return lookup == null ? work.call() : lookup.submit(work);
+    }
+
+    @Override
+    public void destroy() {
+        if (listing != null) {
+            listing.executor.shutdown();
+            lookup.executor.shutdown();
+        }
+    }
+
+    static final class Bulkhead {
+        private static final int QUEUED = 0;
+        private static final int RUNNING = 1;
+        private static final int ABANDONED = 2;
+        private final ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        private final Semaphore admitted;
+        private final long timeoutMillis;
+        private final Counter rejected;
+        private final Counter timeouts;
+
+        Bulkhead(String route, int threads, int queueCapacity, Duration timeout,
+                 MeterRegistry meterRegistry) {
+            executor.setCorePoolSize(threads);
+            executor.setMaxPoolSize(threads);
+            executor.setThreadNamePrefix(route + "-");
+            // The request's attributes (current URI for Link headers) follow the task
+            executor.setTaskDecorator(task -> {
+                RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+                return () -> {
+                    RequestContextHolder.setRequestAttributes(attributes);
+                    try {
+                        task.run();
+                    } finally {
+                        RequestContextHolder.resetRequestAttributes();
+                    }
+                };
+            });
+            executor.initialize();
+            this.admitted = new Semaphore(threads + queueCapacity);
+            this.timeoutMillis = timeout.toMillis();
+
+            Gauge.builder(METRIC_PREFIX + ".concurrency.limit", executor,
+                    ThreadPoolTaskExecutor::getMaxPoolSize)
+                    .description("Requests a route class serves concurrently")
+                    .tag("route", route).register(meterRegistry);
+            Gauge.builder(METRIC_PREFIX + ".capacity", () -> threads + queueCapacity)
+                    .description("Requests a route class admits before rejecting")
+                    .tag("route", route).register(meterRegistry);
+            Gauge.builder(METRIC_PREFIX + ".active", executor, ThreadPoolTaskExecutor::getActiveCount)
+                    .tag("route", route).register(meterRegistry);
+            Gauge.builder(METRIC_PREFIX + ".queued", executor,
+                    pool -> pool.getThreadPoolExecutor().getQueue().size())
+                    .tag("route", route).register(meterRegistry);
+            this.rejected = Counter.builder(METRIC_PREFIX + ".rejected")
+                    .tag("route", route).register(meterRegistry);
+            this.timeouts = Counter.builder(METRIC_PREFIX + ".timeouts")
+                    .tag("route", route).register(meterRegistry);
+        }
+
+        // A rejection is answered on the request thread, so rejected requests
+        // never wait in a queue of their own
+        <T> Object submit(Callable<ResponseEntity<T>> work) {
+            if (!admitted.tryAcquire()) {
+                rejected.increment();
+                return unavailable();
+            }
+            // A permit is returned exactly once: when the work finishes, or at
+            // timeout if the work never left the queue (it is cancelled then)
+            AtomicInteger state = new AtomicInteger(QUEUED);
+            WebAsyncTask<ResponseEntity<T>> task = new WebAsyncTask<>(timeoutMillis, executor, () -> {
+                if (!state.compareAndSet(QUEUED, RUNNING)) {
+                    return null;
+                }
+                try {
+                    return work.call();
+                } catch (Exception e) {
+                    // Spring interrupts the work before running onTimeout, and
+                    // whichever result comes first is the one sent
+                    if (Thread.interrupted() || isInterruption(e)) {
+                        return unavailable();
+                    }
+                    throw e;
+                } finally {
+                    admitted.release();
+                }
+            });
+            task.onTimeout(() -> {
+                timeouts.increment();
+                if (state.compareAndSet(QUEUED, ABANDONED)) {
+                    admitted.release();
+                }
+                return unavailable();
+            });
+            return task;
+        }
+
+        private static boolean isInterruption(Throwable e) {
+            for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+                if (cause instanceof InterruptedException
+                        || cause instanceof InterruptedIOException) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private static <T> ResponseEntity<T> unavailable() {
+            HttpHeaders headers = new HttpHeaders();
+            headers.set(HttpHeaders.RETRY_AFTER, "1");
+            return new ResponseEntity<>(headers, HttpStatus.SERVICE_UNAVAILABLE);
+        }
+    }
+}
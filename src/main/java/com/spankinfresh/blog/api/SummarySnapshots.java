@@ -0,0 +1,252 @@
+package com.spankinfresh.blog.api;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.spankinfresh.blog.data.BlogPostJdbcTemplateRepository;
+import com.spankinfresh.blog.data.ReadWriteRouting;
+import com.spankinfresh.blog.domain.BlogPost;
+import com.spankinfresh.blog.domain.Category;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Keeps the full {@code /api/summary/articles} and {@code /api/categories}
+ * responses as JSON, CBOR and Smile bytes, plus a gzip copy of each, built
+ * once per change instead of once per request. The article write paths call
+ * {@link #invalidate}, which rebuilds both on a background thread. Readers
+ * never wait: until the new snapshot is swapped in they get the previous one.
+ * They are also rebuilt every {@code blog.snapshots.max-age}, which picks up
+ * changes made by other instances and retries a rebuild that failed.
+ */
+@Component
+public class SummarySnapshots implements DisposableBean {
+
+    public static final String METRIC_NAME = "blog.snapshot.rebuilds";
+
+    private static final Logger logger = LoggerFactory.getLogger(SummarySnapshots.class);
+
+    private final BlogPostJdbcTemplateRepository blogPostJdbcTemplateRepository;
+    private final List<Format> formats;
+    private final ThreadPoolTaskScheduler rebuilder = new ThreadPoolTaskScheduler();
+    private final Duration maxAge;
+    private final AtomicBoolean rebuildQueued = new AtomicBoolean();
+    private final AtomicBoolean rebuilding = new AtomicBoolean();
+    private final Counter rebuilt;
+    private final Counter failed;
+    private volatile Snapshots current;
+
+    public SummarySnapshots(BlogPostJdbcTemplateRepository blogPostJdbcTemplateRepository,
+                            ObjectMapper objectMapper,
+                            MappingJackson2CborHttpMessageConverter cborConverter,
+                            MappingJackson2SmileHttpMessageConverter smileConverter,
+                            @Value("${blog.snapshots.max-age:10m}") Duration maxAge,
+                            MeterRegistry meterRegistry) {
+        this.blogPostJdbcTemplateRepository = blogPostJdbcTemplateRepository;
+        this.maxAge = maxAge;
+        // Each with the mapper its converter would use for the same response
+        this.formats = Arrays.asList(
+                new Format(MediaType.APPLICATION_JSON, "", objectMapper),
+                new Format(BinaryMediaTypes.CBOR, "-cbor", cborConverter.getObjectMapper()),
+                new Format(BinaryMediaTypes.SMILE, "-smile", smileConverter.getObjectMapper()));
+        this.rebuilt = rebuilds(meterRegistry, "success");
+        this.failed = rebuilds(meterRegistry, "failure");
+        rebuilder.setPoolSize(1);
+        rebuilder.setThreadNamePrefix("snapshots-");
+        rebuilder.initialize();
+    }
+
+    private static Counter rebuilds(MeterRegistry registry, String result) {
+        return Counter.builder(METRIC_NAME)
+                .description("Summary and category snapshot rebuilds")
+                .tag("result", result)
+                .register(registry);
+    }
+
+    // Runs after BlogPostJdbcTemplateRepository#initializeCategories; the
+    // first rebuild is scheduled at once
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        rebuilder.scheduleWithFixedDelay(this::invalidate, maxAge);
+    }
+
+    /**
+     * Schedules a rebuild. Calls made while one is queued share it; calls
+     * made while one is running queue another, so the last write is always
+     * reflected.
+     */
+    public void invalidate() {
+        if (rebuildQueued.compareAndSet(false, true)) {
+            rebuilder.execute(this::rebuild);
+        }
+    }
+
+    /** Whether a rebuild is queued or running. */
+    public boolean isRebuildPending() {
+        return rebuildQueued.get() || rebuilding.get();
+    }
+
+    /** @param mediaType JSON, {@link BinaryMediaTypes#CBOR} or {@link BinaryMediaTypes#SMILE} */
+    public ResponseEntity<byte[]> summaries(MediaType mediaType, String acceptEncoding) {
+        return respond(snapshots().summaries, mediaType, acceptEncoding);
+    }
+
+    public ResponseEntity<byte[]> categories(MediaType mediaType, String acceptEncoding) {
+        return respond(snapshots().categories, mediaType, acceptEncoding);
+    }
+
+    @Override
+    public void destroy() {
+        rebuilder.shutdown();
+    }
+
+    private void rebuild() {
+        rebuilding.set(true);
+        rebuildQueued.set(false);
+        try {
+            current = build();
+            rebuilt.increment();
+        } catch (RuntimeException e) {
+            // Keep serving the previous snapshot; the next write or the
+            // periodic rebuild retries
+            failed.increment();
+            logger.warn("Could not rebuild the summary and category snapshots", e);
+        } finally {
+            rebuilding.set(false);
+        }
+    }
+
+    // Only until the first background build has finished
+    private Snapshots snapshots() {
+        Snapshots snapshots = current;
+        return snapshots != null ? snapshots : build();
+    }
+
+    // From the primary, like every other cache fill: a lagging replica would
+    // leave the snapshot stale until the next write
+    private Snapshots build() {
+        List<BlogPost> summaries = new ArrayList<>();
+        ReadWriteRouting.run(ReadWriteRouting.Target.PRIMARY, () -> summaries.addAll(
+                blogPostJdbcTemplateRepository.getAllBlogPostingsOmittingContent()));
+        Map<MediaType, Snapshot> summarySnapshots = new LinkedHashMap<>();
+        for (Format format : formats) {
+            summarySnapshots.put(format.mediaType, new Snapshot(
+                    format.serialize(summaries), format.tag(ETags.forSummaries(summaries))));
+        }
+        List<Category> categories = blogPostJdbcTemplateRepository.getCategoryList();
+        Map<MediaType, Snapshot> categorySnapshots = new LinkedHashMap<>();
+        for (Format format : formats) {
+            byte[] bytes = format.serialize(categories);
+            categorySnapshots.put(format.mediaType, new Snapshot(bytes,
+                    "\"" + DigestUtils.md5DigestAsHex(bytes) + "\""));
+        }
+        return new Snapshots(summarySnapshots, categorySnapshots);
+    }
+
+    private static ResponseEntity<byte[]> respond(Map<MediaType, Snapshot> snapshots,
+                                                  MediaType mediaType, String acceptEncoding) {
+        Snapshot snapshot = snapshots.get(mediaType);
+        if (snapshot == null) {
+            throw new IllegalArgumentException("No snapshot for " + mediaType);
+        }
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(mediaType);
+        // Vary: Accept is added to every /api response by BinaryFormatConfiguration
+        headers.setVary(Collections.singletonList(HttpHeaders.ACCEPT_ENCODING));
+        if (AcceptEncoding.acceptsGzip(acceptEncoding)) {
+            headers.setETag(snapshot.gzipETag);
+            headers.set(HttpHeaders.CONTENT_ENCODING, "gzip");
+            return new ResponseEntity<>(snapshot.gzip, headers, HttpStatus.OK);
+        }
+        headers.setETag(snapshot.eTag);
+        return new ResponseEntity<>(snapshot.bytes, headers, HttpStatus.OK);
+    }
+
+    private static final class Format {
+        final MediaType mediaType;
+        // Strong tags have to differ between representations
+        final String eTagSuffix;
+        final ObjectMapper objectMapper;
+
+        Format(MediaType mediaType, String eTagSuffix, ObjectMapper objectMapper) {
+            this.mediaType = mediaType;
+            this.eTagSuffix = eTagSuffix;
+            this.objectMapper = objectMapper;
+        }
+
+        String tag(String eTag) {
+            return eTag.substring(0, eTag.length() - 1) + eTagSuffix + "\"";
+        }
+
+        byte[] serialize(Object value) {
+            try {
+                return objectMapper.writeValueAsBytes(value);
+            } catch (JsonProcessingException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    private static final class Snapshots {
+        final Map<MediaType, Snapshot> summaries;
+        final Map<MediaType, Snapshot> categories;
+
+        Snapshots(Map<MediaType, Snapshot> summaries, Map<MediaType, Snapshot> categories) {
+            this.summaries = summaries;
+            this.categories = categories;
+        }
+    }
+
+    // The arrays are handed to responses as they are and never written to
+    private static final class Snapshot {
+        final byte[] bytes;
+        final byte[] gzip;
+        final String eTag;
+        // Strong tags have to differ between content codings
+        final String gzipETag;
+
+        Snapshot(byte[] bytes, String eTag) {
+            this.bytes = bytes;
+            this.gzip = gzip(bytes);
+            this.eTag = eTag;
+            this.gzipETag = eTag.substring(0, eTag.length() - 1) + "-gzip\"";
+        }
+
+        private static byte[] gzip(byte[] plain) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(plain.length / 4 + 64);
+            try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+                gzip.write(plain);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return out.toByteArray();
+        }
+    }
+}
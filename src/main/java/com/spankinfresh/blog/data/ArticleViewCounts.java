@@ -0,0 +1,162 @@
+package com.spankinfresh.blog.data;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts article views in memory and adds them to {@code blog_post.view_count}
+ * in one batch per flush interval, so reads never write to the database. A
+ * crash loses at most the views of the current interval; a clean shutdown
+ * flushes them.
+ * <p>
+ * After each flush the most-read list is re-read from the database, which
+ * also picks up the views counted by other instances, and kept in memory for
+ * {@link #mostRead}. Articles that go a whole interval without a view stop
+ * being tracked until they are read again.
+ */
+@Component
+public class ArticleViewCounts implements DisposableBean {
+
+    public static final String METRIC_NAME = "blog.article.views.flushes";
+    public static final String TRACKED_METRIC_NAME = "blog.article.views.tracked";
+
+    private static final Logger logger = LoggerFactory.getLogger(ArticleViewCounts.class);
+
+    private final BlogPostJdbcTemplateRepository blogPostJdbcTemplateRepository;
+    private final ConcurrentHashMap<Long, ViewCounter> counters = new ConcurrentHashMap<>();
+    private final ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+    private final Duration flushInterval;
+    private final int mostReadSize;
+    private final Counter flushed;
+    private final Counter failed;
+    private volatile List<PopularArticle> mostRead = Collections.emptyList();
+
+    public ArticleViewCounts(BlogPostJdbcTemplateRepository blogPostJdbcTemplateRepository,
+                             @Value("${blog.views.flush-interval:5s}") Duration flushInterval,
+                             @Value("${blog.views.most-read-size:100}") int mostReadSize,
+                             MeterRegistry meterRegistry) {
+        this.blogPostJdbcTemplateRepository = blogPostJdbcTemplateRepository;
+        this.flushInterval = flushInterval;
+        this.mostReadSize = mostReadSize;
+        this.flushed = flushes(meterRegistry, "success");
+        this.failed = flushes(meterRegistry, "failure");
+        Gauge.builder(TRACKED_METRIC_NAME, counters, Map::size)
+                .description("Articles with views counted in memory")
+                .register(meterRegistry);
+        scheduler.setPoolSize(1);
+        scheduler.setThreadNamePrefix("view-counts-");
+        scheduler.initialize();
+    }
+
+    private static Counter flushes(MeterRegistry registry, String result) {
+        return Counter.builder(METRIC_NAME)
+                .description("Batched view count writes")
+                .tag("result", result)
+                .register(registry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        scheduler.scheduleWithFixedDelay(this::flush, flushInterval);
+    }
+
+    /** Called on the read path; contended posts spread over LongAdder cells. */
+    public void recordView(long id) {
+        counters.computeIfAbsent(id, key -> new ViewCounter()).views.increment();
+    }
+
+    public void remove(long id) {
+        counters.remove(id);
+    }
+
+    /** Most-read articles as of the last flush, at most {@code limit}. */
+    public List<PopularArticle> mostRead(int limit) {
+        List<PopularArticle> snapshot = mostRead;
+        return snapshot.subList(0, Math.min(limit, snapshot.size()));
+    }
+
+    public int getMostReadSize() {
+        return mostReadSize;
+    }
+
+    /**
+     * Writes the views counted since the last successful flush and refreshes
+     * the most-read list. Views that fail to be written stay pending and go
+     * out with the next batch.
+     */
+    public synchronized void flush() {
+        try {
+            SortedMap<Long, Long> increments = new TreeMap<>();
+            Map<ViewCounter, Long> totals = new HashMap<>();
+            Map<Long, ViewCounter> idle = new HashMap<>();
+            counters.forEach((id, counter) -> {
+                long total = counter.views.sum();
+                if (total > counter.flushed) {
+                    increments.put(id, total - counter.flushed);
+                    totals.put(counter, total);
+                    counter.idle = false;
+                } else if (counter.idle) {
+                    idle.put(id, counter);
+                } else {
+                    counter.idle = true;
+                }
+            });
+            if (!increments.isEmpty()) {
+                blogPostJdbcTemplateRepository.addViewCounts(increments);
+                totals.forEach((counter, total) -> counter.flushed = total);
+            }
+            idle.forEach(this::untrack);
+            mostRead = Collections.unmodifiableList(new ArrayList<>(
+                    blogPostJdbcTemplateRepository.getMostRead(mostReadSize)));
+            flushed.increment();
+        } catch (RuntimeException e) {
+            failed.increment();
+            logger.warn("Could not write article view counts; they stay pending", e);
+        }
+    }
+
+    // Stops tracking a fully flushed counter. A view recorded while it was
+    // being removed is carried over to a new counter for the article.
+    private void untrack(long id, ViewCounter counter) {
+        if (counters.remove(id, counter)) {
+            long late = counter.views.sum() - counter.flushed;
+            if (late > 0) {
+                counters.computeIfAbsent(id, key -> new ViewCounter()).views.add(late);
+            }
+        }
+    }
+
+    @Override
+    public void destroy() {
+        scheduler.shutdown();
+        flush();
+    }
+
+    private static final class ViewCounter {
+        final LongAdder views = new LongAdder();
+        // Views already added to the database, and whether the last flush
+        // found no new ones; only the flush touches these
+        long flushed;
+        boolean idle;
+    }
+}
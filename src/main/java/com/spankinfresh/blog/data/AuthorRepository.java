@@ -1,7 +1,74 @@
 package com.spankinfresh.blog.data;
 
 import com.spankinfresh.blog.domain.Author;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.QueryHint;
+import java.util.Optional;
+
+import static org.hibernate.jpa.QueryHints.HINT_CACHEABLE;
+import static org.hibernate.jpa.QueryHints.HINT_CACHE_REGION;
 
 public interface AuthorRepository extends CrudRepository<Author, Long> {
+    String QUERY_CACHE_REGION = "author-queries";
+
+    // Authors are served from Hibernate's "authors" region. Like the
+    // "articles" cache, misses read the primary (a read-write transaction is
+    // never routed to a replica), so a lagging replica cannot put a stale
+    // author in the cache.
+    @Override
+    @Transactional
+    Optional<Author> findById(Long id);
+
+    // The query cache holds the ids; any write to author, including the
+    // bulk statements below, invalidates it before the next read
+    @Override
+    @Transactional
+    @QueryHints({
+            @QueryHint(name = HINT_CACHEABLE, value = "true"),
+            @QueryHint(name = HINT_CACHE_REGION, value = QUERY_CACHE_REGION)})
+    Iterable<Author> findAll();
+
+    // Single-statement writes; the affected-row count is 0 when the author
+    // does not exist or, for the versioned forms, has been changed since.
+    // Hibernate evicts the whole "authors" region after each of them, which
+    // is cheap for data that changes this rarely. Cached articles hold a copy
+    // of their author, so the "articles" cache is cleared as well, after the
+    // commit.
+    @Transactional
+    @CacheEvict(cacheNames = BlogPostRepository.ARTICLE_CACHE, allEntries = true)
+    @Modifying
+    @Query("update Author a set a.firstName = :#{#author.firstName}, " +
+            "a.lastName = :#{#author.lastName}, " +
+            "a.emailAddress = :#{#author.emailAddress}, " +
+            "a.version = a.version + 1 where a.id = :#{#author.id}")
+    int update(@Param("author") Author author);
+
+    @Transactional
+    @CacheEvict(cacheNames = BlogPostRepository.ARTICLE_CACHE, allEntries = true)
+    @Modifying
+    @Query("update Author a set a.firstName = :#{#author.firstName}, " +
+            "a.lastName = :#{#author.lastName}, " +
+            "a.emailAddress = :#{#author.emailAddress}, " +
+            "a.version = a.version + 1 " +
+            "where a.id = :#{#author.id} and a.version = :version")
+    int updateIfVersion(@Param("author") Author author, @Param("version") long version);
+
+    @Transactional
+    @CacheEvict(cacheNames = BlogPostRepository.ARTICLE_CACHE, allEntries = true)
+    @Modifying
+    @Query("delete from Author a where a.id = :id")
+    int remove(@Param("id") long id);
+
+    @Transactional
+    @CacheEvict(cacheNames = BlogPostRepository.ARTICLE_CACHE, allEntries = true)
+    @Modifying
+    @Query("delete from Author a where a.id = :id and a.version = :version")
+    int removeIfVersion(@Param("id") long id, @Param("version") long version);
 }
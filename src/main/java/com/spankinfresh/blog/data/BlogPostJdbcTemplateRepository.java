@@ -1,39 +1,508 @@
 package com.spankinfresh.blog.data;
 
+import com.spankinfresh.blog.domain.Author;
 import com.spankinfresh.blog.domain.BlogPost;
 import com.spankinfresh.blog.domain.Category;
+import com.spankinfresh.blog.domain.ContentConverter;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.jdbc.core.BeanPropertyRowMapper;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.ArgumentPreparedStatementSetter;
+import org.springframework.jdbc.core.ConnectionCallback;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.jdbc.support.JdbcUtils;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.SynchronousSink;
+import reactor.core.scheduler.Schedulers;
 
 import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
 import java.util.List;
+import java.util.SortedMap;
+import java.util.function.Consumer;
 
 @Repository
 public class BlogPostJdbcTemplateRepository {
 
+    public static final String CATEGORY_CACHE = "categories";
+
+    // Rows pulled per round trip while streaming. Postgres only honours this
+    // (instead of buffering the whole result) inside a transaction.
+    private static final int STREAM_FETCH_SIZE = 100;
+
+    // Row mappers read columns by position, so every query using one must
+    // select exactly these columns in this order.
+    public static final String SUMMARY_COLUMNS = "id, title, category, date_posted ";
+
+    public static final RowMapper<BlogPost> SUMMARY_ROW_MAPPER = (resultsRow, rowNum) -> {
+        BlogPost blogPost = new BlogPost();
+        blogPost.setId(resultsRow.getLong(1));
+        blogPost.setTitle(resultsRow.getString(2));
+        blogPost.setCategory(resultsRow.getString(3));
+        blogPost.setDatePosted(resultsRow.getTimestamp(4));
+        return blogPost;
+    };
+
+    private static final String POSTING_COLUMNS =
+            "p.id, p.title, p.category, p.date_posted, c.content, " +
+                    "a.id, a.first_name, a.last_name, a.email_address ";
+
+    private static final RowMapper<BlogPost> POSTING_ROW_MAPPER = (resultsRow, rowNum) -> {
+        Author author = null;
+        long authorId = resultsRow.getLong(6);
+        if (!resultsRow.wasNull()) {
+            author = new Author(authorId, resultsRow.getString(7),
+                    resultsRow.getString(8), resultsRow.getString(9));
+        }
+        return new BlogPost(resultsRow.getLong(1), author, resultsRow.getString(3),
+                resultsRow.getTimestamp(4), resultsRow.getString(2),
+                ContentConverter.decode(resultsRow.getBytes(5)));
+    };
+
+    private static final String CATEGORY_COLUMNS =
+            "id, category_name, post_count, latest_date_posted ";
+
+    private static final RowMapper<Category> CATEGORY_ROW_MAPPER = (resultsRow, rowNum) -> {
+        Category category = new Category();
+        category.setId(resultsRow.getLong(1));
+        category.setCategoryName(resultsRow.getString(2));
+        category.setPostCount(resultsRow.getLong(3));
+        category.setLatestDatePosted(resultsRow.getTimestamp(4));
+        return category;
+    };
+
+    private static final String SUMMARY_FIRST_PAGE_SQL =
+            "select " + SUMMARY_COLUMNS +
+                    "from blog_post order by date_posted desc, id desc limit ?";
+
+    private static final String SUMMARY_PAGE_AFTER_SQL =
+            "select " + SUMMARY_COLUMNS +
+                    "from blog_post where date_posted < ? " +
+                    "or (date_posted = ? and id < ?) " +
+                    "order by date_posted desc, id desc limit ?";
+
+    // Parameters: category name, posts added, latest date posted. Postgres
+    // and H2 are supported, as in pom.xml.
+    private static final String POSTGRES_UPSERT_CATEGORY_SQL =
+            "insert into category (category_name, post_count, latest_date_posted) " +
+                    "values (?, ?, ?) on conflict (category_name) do update " +
+                    "set post_count = category.post_count + excluded.post_count, " +
+                    "latest_date_posted = greatest(category.latest_date_posted, " +
+                    "excluded.latest_date_posted)";
+
+    private static final int H2_UPSERT_ATTEMPTS = 3;
+
+    private static final String H2_UPSERT_CATEGORY_SQL =
+            "merge into category c using (select cast(? as varchar(200)) category_name, " +
+                    "cast(? as bigint) post_count, cast(? as timestamp) latest_date_posted) a " +
+                    "on c.category_name = a.category_name " +
+                    "when matched then update set c.post_count = c.post_count + a.post_count, " +
+                    "c.latest_date_posted = greatest(c.latest_date_posted, a.latest_date_posted) " +
+                    "when not matched then insert (category_name, post_count, latest_date_posted) " +
+                    "values (a.category_name, a.post_count, a.latest_date_posted)";
+
+    // Conditional writes of a post. They match its id and, when the client
+    // sent If-Match, the version and author version it was served as the
+    // ETag. On Postgres each returns what the caller needs from the row as it
+    // was in the same statement, so nothing is read first. H2 1.4 accepts
+    // "select ... from old table (update ...)" but drops the update, so there
+    // the row is locked and read first, in the same transaction.
+    private static final String POSTING_ASSIGNMENTS =
+            "set category = ?, title = ?, date_posted = ?, author_id = ?, " +
+                    "version = b.version + 1 ";
+
+    private static final String POSTING_UNCHANGED = " and b.version = ? and " +
+            "coalesce((select a.version from author a where a.id = b.author_id), " +
+            BlogPostRepository.NO_AUTHOR_VERSION + ") = ?";
+
+    // Locks the row before reading it, so the values returned are the ones
+    // this update replaced even when another writer committed in between
+    private static final String POSTGRES_UPDATE_POSTING_SQL =
+            "with o as (select category, date_posted, body_id from blog_post " +
+                    "where id = ? for update) " +
+                    "update blog_post b " + POSTING_ASSIGNMENTS + "from o where b.id = ?";
+
+    private static final String POSTGRES_UPDATE_POSTING_RETURNING =
+            " returning o.category, o.date_posted, o.body_id, b.version, " +
+                    "(select a.version from author a where a.id = b.author_id)";
+
+    private static final String DELETE_POSTING_SQL =
+            "delete from blog_post b where b.id = ?";
+
+    private static final String H2_LOCK_UPDATED_POSTING_SQL =
+            "select category, date_posted, body_id, version + 1, " +
+                    "(select a.version from author a where a.id = ?) " +
+                    "from blog_post where id = ? for update";
+
+    private static final String H2_UPDATE_POSTING_SQL =
+            "update blog_post b " + POSTING_ASSIGNMENTS + "where b.id = ?";
+
+    private static final String H2_LOCK_DELETED_POSTING_SQL =
+            "select category, body_id from blog_post where id = ? for update";
+
+    private static final RowMapper<PostingWrite> POSTING_WRITE_ROW_MAPPER =
+            (resultsRow, rowNum) -> {
+                Long authorVersion = resultsRow.getLong(5);
+                if (resultsRow.wasNull()) {
+                    authorVersion = null;
+                }
+                return new PostingWrite(resultsRow.getString(1), resultsRow.getTimestamp(2),
+                        resultsRow.getLong(3), resultsRow.getLong(4), authorVersion);
+            };
+
+    private static final RowMapper<PostingWrite> DELETED_POSTING_ROW_MAPPER =
+            (resultsRow, rowNum) -> new PostingWrite(resultsRow.getString(1), null,
+                    resultsRow.getLong(2), 0, null);
+
+    private DataSource dataSource;
     private JdbcTemplate jdbcTemplate;
+    private JdbcTemplate streamingJdbcTemplate;
+    private boolean postgres;
     @Autowired
     public void setDataSource(DataSource dataSource) {
+        this.dataSource = dataSource;
         this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.streamingJdbcTemplate = new JdbcTemplate(dataSource);
+        this.streamingJdbcTemplate.setFetchSize(STREAM_FETCH_SIZE);
+        String product = jdbcTemplate.execute((ConnectionCallback<String>) connection ->
+                connection.getMetaData().getDatabaseProductName());
+        this.postgres = "PostgreSQL".equals(product);
     }
 
+    @Transactional(readOnly = true)
     public List<BlogPost> getAllBlogPostingsOmittingContent() {
         return jdbcTemplate.query(
-                "select id, title, category, date_posted " +
+                "select " + SUMMARY_COLUMNS +
                         "from blog_post order by date_posted desc",
-                BeanPropertyRowMapper.newInstance(BlogPost.class));
+                SUMMARY_ROW_MAPPER);
+    }
+
+    @Transactional(readOnly = true)
+    public List<BlogPost> getBlogPostingsOmittingContent(PageCursor after, int limit) {
+        if (after == null) {
+            return jdbcTemplate.query(SUMMARY_FIRST_PAGE_SQL, SUMMARY_ROW_MAPPER, limit);
+        }
+        return jdbcTemplate.query(SUMMARY_PAGE_AFTER_SQL, SUMMARY_ROW_MAPPER,
+                after.getDatePosted(), after.getDatePosted(), after.getId(), limit);
+    }
+
+    /**
+     * Emits the same rows as {@link #getBlogPostingsOmittingContent}, read
+     * from an open cursor only as fast as the subscriber requests them. The
+     * connection is taken on subscription, on a bounded elastic thread, and
+     * returned when the flux completes, fails or is cancelled. It comes from
+     * a replica unless the calling request is pinned to the primary.
+     */
+    public Flux<BlogPost> fluxBlogPostingsOmittingContent(PageCursor after, int limit) {
+        if (after == null) {
+            return flux(SUMMARY_FIRST_PAGE_SQL, SUMMARY_ROW_MAPPER, limit);
+        }
+        return flux(SUMMARY_PAGE_AFTER_SQL, SUMMARY_ROW_MAPPER,
+                after.getDatePosted(), after.getDatePosted(), after.getId(), limit);
+    }
+
+    @Transactional(readOnly = true)
+    public List<BlogPost> getCategoryPostingsOmittingContent(
+            String category, PageCursor after, int limit) {
+        if (after == null) {
+            return jdbcTemplate.query(
+                    "select " + SUMMARY_COLUMNS +
+                            "from blog_post where category = ? " +
+                            "order by date_posted desc, id desc limit ?",
+                    SUMMARY_ROW_MAPPER, category, limit);
+        }
+        return jdbcTemplate.query(
+                "select " + SUMMARY_COLUMNS +
+                        "from blog_post where category = ? " +
+                        "and (date_posted < ? or (date_posted = ? and id < ?)) " +
+                        "order by date_posted desc, id desc limit ?",
+                SUMMARY_ROW_MAPPER, category,
+                after.getDatePosted(), after.getDatePosted(), after.getId(), limit);
+    }
+
+    /**
+     * Hands every posting, including content and author, to {@code consumer}
+     * one row at a time while the cursor is open, so callers never hold more
+     * than a fetch-sized window of rows in memory.
+     */
+    @Transactional(readOnly = true)
+    public void streamAllBlogPostings(Consumer<BlogPost> consumer) {
+        streamingJdbcTemplate.query(
+                "select " + POSTING_COLUMNS +
+                        "from blog_post p join blog_post_content c on c.id = p.body_id " +
+                        "left join author a on a.id = p.author_id " +
+                        "order by p.date_posted desc, p.id desc",
+                (RowCallbackHandler) resultsRow ->
+                        consumer.accept(POSTING_ROW_MAPPER.mapRow(resultsRow, 0)));
     }
 
+    /**
+     * Returns content exactly as stored, which may already be gzip encoded;
+     * see {@link ContentConverter#isGzip}. Null when the post does not exist.
+     */
+    @Transactional(readOnly = true)
+    public byte[] getStoredContent(long id) {
+        List<byte[]> rows = jdbcTemplate.query(
+                "select c.content from blog_post p " +
+                        "join blog_post_content c on c.id = p.body_id where p.id = ?",
+                (resultsRow, rowNum) -> resultsRow.getBytes(1), id);
+        return rows.isEmpty() ? null : rows.get(0);
+    }
+
+    // Served from memory; BlogPostService evicts it once a write's
+    // transaction has committed. Misses read the primary, which a lagging
+    // replica could otherwise leave cached until the next write.
+    @Cacheable(cacheNames = CATEGORY_CACHE, key = "'all'")
     public List<Category> getCategoryList() {
         return jdbcTemplate.query(
-                "select distinct category from blog_post order by category",
-                (resultsRow, rowNum) -> {
-                    Category category = new Category();
-                    category.setId(rowNum);
-                    category.setCategoryName(resultsRow.getString("category"));
-                    return category;
-                });
+                "select " + CATEGORY_COLUMNS +
+                        "from category where post_count > 0 order by category_name",
+                CATEGORY_ROW_MAPPER);
+    }
+
+    @CacheEvict(cacheNames = CATEGORY_CACHE, allEntries = true)
+    public void recordPostAdded(String categoryName, Date datePosted) {
+        recordPostsAdded(categoryName, 1, datePosted);
+    }
+
+    /**
+     * Adds posts to a category, creating its row if needed, in one statement.
+     * Writers adding the first posts of a new category at the same time are
+     * serialized on its unique name; a failed insert would abort a Postgres
+     * transaction, and with it the post written before this.
+     */
+    @CacheEvict(cacheNames = CATEGORY_CACHE, allEntries = true)
+    public void recordPostsAdded(String categoryName, int count, Date latestDatePosted) {
+        if (postgres) {
+            jdbcTemplate.update(POSTGRES_UPSERT_CATEGORY_SQL,
+                    categoryName, count, latestDatePosted);
+            return;
+        }
+        // An H2 merge is not atomic: both first writers can take the insert
+        // branch. A failed statement leaves an H2 transaction usable, so the
+        // loser merges again and finds the winner's row.
+        for (int attempt = 1; ; attempt++) {
+            try {
+                jdbcTemplate.update(H2_UPSERT_CATEGORY_SQL,
+                        categoryName, count, latestDatePosted);
+                return;
+            } catch (DuplicateKeyException e) {
+                if (attempt == H2_UPSERT_ATTEMPTS) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    @CacheEvict(cacheNames = CATEGORY_CACHE, allEntries = true)
+    public void recordPostRemoved(String categoryName) {
+        jdbcTemplate.update(
+                "update category set post_count = post_count - 1, " +
+                        "latest_date_posted = (select max(date_posted) " +
+                        "from blog_post where category = ?) " +
+                        "where category_name = ? and post_count > 0",
+                categoryName, categoryName);
+    }
+
+    // For a post whose date changed without leaving its category
+    @CacheEvict(cacheNames = CATEGORY_CACHE, allEntries = true)
+    public void recordPostRedated(String categoryName) {
+        jdbcTemplate.update(
+                "update category set latest_date_posted = (select max(date_posted) " +
+                        "from blog_post where category = ?) where category_name = ?",
+                categoryName, categoryName);
+    }
+
+    /**
+     * Replaces a post's own columns and bumps its version. A null
+     * {@code expectedVersion} (no If-Match) updates whatever is stored.
+     * Returns null when no row matched; the body is left to the caller.
+     */
+    @Transactional
+    public PostingWrite updatePosting(BlogPost blogPost, Long expectedVersion,
+                                      long expectedAuthorVersion) {
+        Object authorId = blogPost.getAuthor() == null ? null : blogPost.getAuthor().getId();
+        List<Object> args = new ArrayList<>(Arrays.asList(blogPost.getCategory(),
+                blogPost.getTitle(), blogPost.getDatePosted(), authorId, blogPost.getId()));
+        String unchanged = unchanged(expectedVersion, expectedAuthorVersion, args);
+        if (postgres) {
+            args.add(0, blogPost.getId());
+            return single(jdbcTemplate.query(POSTGRES_UPDATE_POSTING_SQL + unchanged +
+                    POSTGRES_UPDATE_POSTING_RETURNING, POSTING_WRITE_ROW_MAPPER, args.toArray()));
+        }
+        PostingWrite previous = single(jdbcTemplate.query(H2_LOCK_UPDATED_POSTING_SQL,
+                POSTING_WRITE_ROW_MAPPER, authorId, blogPost.getId()));
+        if (previous == null
+                || jdbcTemplate.update(H2_UPDATE_POSTING_SQL + unchanged, args.toArray()) == 0) {
+            return null;
+        }
+        return previous;
+    }
+
+    /**
+     * Deletes a post, matching as {@link #updatePosting} does, and returns
+     * its category and body id, or null when no row matched.
+     */
+    @Transactional
+    public PostingWrite deletePosting(long id, Long expectedVersion,
+                                      long expectedAuthorVersion) {
+        List<Object> args = new ArrayList<>(Collections.singletonList(id));
+        String unchanged = unchanged(expectedVersion, expectedAuthorVersion, args);
+        if (postgres) {
+            return single(jdbcTemplate.query(DELETE_POSTING_SQL + unchanged +
+                            " returning b.category, b.body_id", DELETED_POSTING_ROW_MAPPER,
+                    args.toArray()));
+        }
+        PostingWrite previous = single(jdbcTemplate.query(H2_LOCK_DELETED_POSTING_SQL,
+                DELETED_POSTING_ROW_MAPPER, id));
+        if (previous == null || jdbcTemplate.update(
+                DELETE_POSTING_SQL + unchanged, args.toArray()) == 0) {
+            return null;
+        }
+        return previous;
+    }
+
+    // The If-Match condition, if any, with its parameters added to args
+    private static String unchanged(Long expectedVersion, long expectedAuthorVersion,
+                                    List<Object> args) {
+        if (expectedVersion == null) {
+            return "";
+        }
+        args.add(expectedVersion);
+        args.add(expectedAuthorVersion);
+        return POSTING_UNCHANGED;
+    }
+
+    /**
+     * Adds view counts in one batch, in id order so that instances flushing
+     * at the same time lock rows in the same order.
+     */
+    @Transactional
+    public void addViewCounts(SortedMap<Long, Long> increments) {
+        List<Object[]> batch = new ArrayList<>(increments.size());
+        increments.forEach((id, views) -> batch.add(new Object[]{views, id}));
+        jdbcTemplate.batchUpdate(
+                "update blog_post set view_count = view_count + ? where id = ?", batch);
+    }
+
+    // Read right after the counts are written, so never from a replica
+    public List<PopularArticle> getMostRead(int limit) {
+        return jdbcTemplate.query(
+                "select " + SUMMARY_COLUMNS + ", view_count " +
+                        "from blog_post where view_count > 0 " +
+                        "order by view_count desc, id desc limit ?",
+                (resultsRow, rowNum) -> new PopularArticle(resultsRow.getLong(1),
+                        resultsRow.getString(2), resultsRow.getString(3),
+                        resultsRow.getTimestamp(4), resultsRow.getLong(5)),
+                limit);
+    }
+
+    /**
+     * Seeds the category table from existing posts the first time the
+     * application starts against a database that predates it. Runs ahead of
+     * the other startup listeners, which read categories.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @CacheEvict(cacheNames = CATEGORY_CACHE, allEntries = true)
+    public void initializeCategories() {
+        Integer categories = jdbcTemplate.queryForObject(
+                "select count(*) from category", Integer.class);
+        if (categories != null && categories == 0) {
+            jdbcTemplate.update(
+                    "insert into category (category_name, post_count, latest_date_posted) " +
+                            "select category, count(*), max(date_posted) " +
+                            "from blog_post group by category");
+        }
+    }
+
+    private static <T> T single(List<T> rows) {
+        return rows.isEmpty() ? null : rows.get(0);
+    }
+
+    private <T> Flux<T> flux(String sql, RowMapper<T> rowMapper, Object... args) {
+        ReadWriteRouting.Target target = ReadWriteRouting.readTarget();
+        return Flux.using(
+                () -> ReadWriteRouting.call(target,
+                        () -> new RowCursor<>(dataSource, sql, rowMapper, args)),
+                cursor -> Flux.generate(cursor::next),
+                RowCursor::close)
+                .onErrorMap(SQLException.class,
+                        e -> jdbcTemplate.getExceptionTranslator().translate("Flux", sql, e))
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    /**
+     * An open result set that maps one row per {@link #next} call. It runs in
+     * a read-only transaction of its own so Postgres honours the fetch size.
+     */
+    private static final class RowCursor<T> {
+        private final DataSource dataSource;
+        private final Connection connection;
+        private final PreparedStatement statement;
+        private final ResultSet resultSet;
+        private final RowMapper<T> rowMapper;
+        private int rowNum;
+
+        RowCursor(DataSource dataSource, String sql, RowMapper<T> rowMapper, Object... args)
+                throws SQLException {
+            this.dataSource = dataSource;
+            this.rowMapper = rowMapper;
+            this.connection = DataSourceUtils.getConnection(dataSource);
+            try {
+                connection.setAutoCommit(false);
+                connection.setReadOnly(true);
+                statement = connection.prepareStatement(sql);
+                statement.setFetchSize(STREAM_FETCH_SIZE);
+                new ArgumentPreparedStatementSetter(args).setValues(statement);
+                resultSet = statement.executeQuery();
+            } catch (SQLException | RuntimeException e) {
+                close();
+                throw e;
+            }
+        }
+
+        void next(SynchronousSink<T> sink) {
+            try {
+                if (resultSet.next()) {
+                    sink.next(rowMapper.mapRow(resultSet, rowNum++));
+                } else {
+                    sink.complete();
+                }
+            } catch (SQLException e) {
+                sink.error(e);
+            }
+        }
+
+        void close() {
+            JdbcUtils.closeResultSet(resultSet);
+            JdbcUtils.closeStatement(statement);
+            try {
+                connection.rollback();
+                connection.setReadOnly(false);
+                connection.setAutoCommit(true);
+            } catch (SQLException e) {
+                // The pool validates the connection before handing it out again
+            } finally {
+                DataSourceUtils.releaseConnection(connection, dataSource);
+            }
+        }
     }
 }
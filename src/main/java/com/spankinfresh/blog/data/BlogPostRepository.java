@@ -1,10 +1,128 @@
 package com.spankinfresh.blog.data;
 
 import com.spankinfresh.blog.domain.BlogPost;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Date;
 import java.util.List;
+import java.util.Optional;
 
+// Query methods run in read-only transactions, which are served by a read
+// replica when one is configured. Writes overridden below declare their own.
+@Transactional(readOnly = true)
 public interface BlogPostRepository extends CrudRepository<BlogPost, Long> {
+    String ARTICLE_CACHE = "articles";
+    // Expected author version of a post that has no author
+    long NO_AUTHOR_VERSION = -1;
+
+    // Hot posts are served from the "articles" cache; misses are not cached
+    // so an id that is created later is never shadowed by an empty entry.
+    // The body is fetched up front because cached entities outlive the
+    // persistence context that could otherwise load it. Misses read the
+    // primary (a read-write transaction is never routed to a replica), so a
+    // lagging replica cannot put a stale post in the cache.
+    @Override
+    @Transactional
+    @EntityGraph(attributePaths = {"body", "author"})
+    @Cacheable(cacheNames = ARTICLE_CACHE, key = "#p0", unless = "#result == null")
+    Optional<BlogPost> findById(Long id);
+
+    @Override
+    @Transactional
+    @CacheEvict(cacheNames = ARTICLE_CACHE, key = "#p0.id")
+    <S extends BlogPost> S save(S entity);
+
+    @Override
+    @Transactional
+    @CacheEvict(cacheNames = ARTICLE_CACHE, key = "#p0.id")
+    void delete(BlogPost entity);
+
+    @Override
+    @Transactional
+    @CacheEvict(cacheNames = ARTICLE_CACHE, key = "#p0")
+    void deleteById(Long id);
+
+    // Bodies of posts written by BlogPostJdbcTemplateRepository, by body id.
+    // Content goes through ContentConverter like any entity write.
+    @Transactional
+    @Modifying
+    @Query("update BlogPostContent c set c.content = :content where c.id = :id")
+    int updateContent(@Param("id") long bodyId, @Param("content") String content);
+
+    @Transactional
+    @Modifying
+    @Query("delete from BlogPostContent c where c.id = :id")
+    int deleteContent(@Param("id") long bodyId);
+
+    // Listings fetch-join the author so a page costs one select for the
+    // posts (plus one batched select for bodies when content is returned; a
+    // page of at most 100 fits one @BatchSize batch), however many distinct
+    // authors it contains.
+    @Override
+    @EntityGraph(attributePaths = "author")
+    Iterable<BlogPost> findAll();
+
+    // Unpaged listings that return content join the bodies as well: they can
+    // hold any number of posts, and @BatchSize would load their bodies in a
+    // number of selects that grows with it
+    @EntityGraph(attributePaths = {"author", "body"})
+    @Query("select b from BlogPost b")
+    List<BlogPost> findAllWithBodies();
+
+    @Override
+    @EntityGraph(attributePaths = "author")
+    Iterable<BlogPost> findAllById(Iterable<Long> ids);
+
+    @EntityGraph(attributePaths = "author")
     List<BlogPost> findByCategoryOrderByDatePostedDesc(String category);
+
+    @EntityGraph(attributePaths = {"author", "body"})
+    List<BlogPost> findWithBodiesByCategoryOrderByDatePostedDesc(String category);
+
+    @EntityGraph(attributePaths = "author")
+    @Query("select b from BlogPost b where b.category = :category " +
+            "order by b.datePosted desc, b.id desc")
+    List<BlogPost> findFirstCategoryPage(@Param("category") String category,
+                                         Pageable pageable);
+
+    @EntityGraph(attributePaths = "author")
+    @Query("select b from BlogPost b where b.category = :category " +
+            "and (b.datePosted < :datePosted " +
+            "or (b.datePosted = :datePosted and b.id < :id)) " +
+            "order by b.datePosted desc, b.id desc")
+    List<BlogPost> findCategoryPageAfter(@Param("category") String category,
+                                         @Param("datePosted") Date datePosted,
+                                         @Param("id") long id,
+                                         Pageable pageable);
+
+    // Rows of (version, author version); what an article's ETag is made of
+    @Query("select b.version, a.version from BlogPost b left join b.author a " +
+            "where b.id = :id")
+    List<Object[]> findVersionsById(@Param("id") long id);
+
+    @Query("select b.id, b.version, a.version from BlogPost b left join b.author a " +
+            "where b.category = :category order by b.datePosted desc")
+    List<Object[]> findVersionsByCategory(@Param("category") String category);
+
+    // Keyset paging: callers pass PageRequest.of(0, limit) so the page size
+    // becomes a LIMIT and no OFFSET is ever generated.
+    @EntityGraph(attributePaths = "author")
+    @Query("select b from BlogPost b order by b.datePosted desc, b.id desc")
+    List<BlogPost> findFirstPage(Pageable pageable);
+
+    @EntityGraph(attributePaths = "author")
+    @Query("select b from BlogPost b where b.datePosted < :datePosted " +
+            "or (b.datePosted = :datePosted and b.id < :id) " +
+            "order by b.datePosted desc, b.id desc")
+    List<BlogPost> findPageAfter(@Param("datePosted") Date datePosted,
+                                 @Param("id") long id,
+                                 Pageable pageable);
 }
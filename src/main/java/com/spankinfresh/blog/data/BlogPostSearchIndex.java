@@ -0,0 +1,150 @@
+package com.spankinfresh.blog.data;
+
+import com.spankinfresh.blog.domain.BlogPost;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory inverted index over blog post titles and content. It is filled
+ * from the database once the application is ready and then kept current by
+ * the article write paths, so searches never touch the database.
+ */
+@Component
+public class BlogPostSearchIndex {
+
+    // A title occurrence counts as much as this many content occurrences
+    private static final int TITLE_WEIGHT = 3;
+    private static final int MIN_TOKEN_LENGTH = 2;
+    private static final Set<String> STOP_WORDS = new HashSet<>(Arrays.asList(
+            "an", "and", "are", "as", "at", "be", "by", "for", "from", "in", "is",
+            "it", "of", "on", "or", "that", "the", "this", "to", "was", "with"));
+
+    private final BlogPostJdbcTemplateRepository blogPostJdbcTemplateRepository;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    // term -> (post id -> weighted term frequency)
+    private final Map<String, Map<Long, Integer>> postings = new HashMap<>();
+    // post id -> terms it was indexed under, so it can be removed again
+    private final Map<Long, Set<String>> documentTerms = new HashMap<>();
+
+    public BlogPostSearchIndex(BlogPostJdbcTemplateRepository blogPostJdbcTemplateRepository) {
+        this.blogPostJdbcTemplateRepository = blogPostJdbcTemplateRepository;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        lock.writeLock().lock();
+        try {
+            postings.clear();
+            documentTerms.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        // From the primary: a replica that lags now would leave the index
+        // missing posts until they are next written
+        ReadWriteRouting.run(ReadWriteRouting.Target.PRIMARY,
+                () -> blogPostJdbcTemplateRepository.streamAllBlogPostings(this::index));
+    }
+
+    /** Adds the post, replacing whatever was indexed for its id before. */
+    public void index(BlogPost blogPost) {
+        Map<String, Integer> frequencies = new HashMap<>();
+        for (String token : tokenize(blogPost.getTitle())) {
+            frequencies.merge(token, TITLE_WEIGHT, Integer::sum);
+        }
+        for (String token : tokenize(blogPost.getContent())) {
+            frequencies.merge(token, 1, Integer::sum);
+        }
+        lock.writeLock().lock();
+        try {
+            removeLocked(blogPost.getId());
+            frequencies.forEach((term, frequency) -> postings
+                    .computeIfAbsent(term, key -> new HashMap<>())
+                    .put(blogPost.getId(), frequency));
+            documentTerms.put(blogPost.getId(), frequencies.keySet());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(long id) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the ids of posts containing any of the query terms, best match
+     * first. Scores are TF-IDF sums with log-damped term frequencies.
+     */
+    public List<Long> search(String query) {
+        Set<String> terms = new LinkedHashSet<>(tokenize(query));
+        Map<Long, Double> scores = new HashMap<>();
+        lock.readLock().lock();
+        try {
+            int documentCount = documentTerms.size();
+            for (String term : terms) {
+                Map<Long, Integer> matches = postings.get(term);
+                if (matches == null) {
+                    continue;
+                }
+                double inverseDocumentFrequency =
+                        Math.log(1.0 + (double) documentCount / matches.size());
+                matches.forEach((id, frequency) -> scores.merge(id,
+                        (1.0 + Math.log(frequency)) * inverseDocumentFrequency,
+                        Double::sum));
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        List<Long> ranked = new ArrayList<>(scores.keySet());
+        ranked.sort((left, right) -> {
+            int byScore = Double.compare(scores.get(right), scores.get(left));
+            return byScore != 0 ? byScore : Long.compare(right, left);
+        });
+        return ranked;
+    }
+
+    static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null) {
+            return tokens;
+        }
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean wordCharacter = i < text.length()
+                    && Character.isLetterOrDigit(text.charAt(i));
+            if (wordCharacter && start < 0) {
+                start = i;
+            } else if (!wordCharacter && start >= 0) {
+                String token = text.substring(start, i).toLowerCase(Locale.ROOT);
+                if (token.length() >= MIN_TOKEN_LENGTH && !STOP_WORDS.contains(token)) {
+                    tokens.add(token);
+                }
+                start = -1;
+            }
+        }
+        return tokens;
+    }
+
+    private void removeLocked(long id) {
+        Set<String> terms = documentTerms.remove(id);
+        if (terms == null) {
+            return;
+        }
+        for (String term : terms) {
+            Map<Long, Integer> matches = postings.get(term);
+            matches.remove(id);
+            if (matches.isEmpty()) {
+                postings.remove(term);
+            }
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.spankinfresh.blog.data;
+
+import com.spankinfresh.blog.domain.BlogPost;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Caching;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.spankinfresh.blog.data.BlogPostJdbcTemplateRepository.CATEGORY_CACHE;
+import static com.spankinfresh.blog.data.BlogPostRepository.ARTICLE_CACHE;
+
+/**
+ * Article writes together with the category counts they change. Each write
+ * is one transaction, so a post and its category row are committed or
+ * rolled back together. The caches are evicted once that transaction has
+ * committed (caching advice runs outside transactions, see BlogApplication),
+ * so a concurrent miss cannot put the state from before the write back.
+ */
+@Service
+public class BlogPostService {
+
+    /** What a conditional write did. */
+    public enum Outcome {
+        WRITTEN,
+        // No such post
+        MISSING,
+        // The post no longer matches the If-Match tag
+        CHANGED
+    }
+
+    private final BlogPostRepository blogPostRepository;
+    private final BlogPostJdbcTemplateRepository blogPostJdbcTemplateRepository;
+
+    public BlogPostService(BlogPostRepository blogPostRepository,
+                           BlogPostJdbcTemplateRepository blogPostJdbcTemplateRepository) {
+        this.blogPostRepository = blogPostRepository;
+        this.blogPostJdbcTemplateRepository = blogPostJdbcTemplateRepository;
+    }
+
+    @Transactional
+    @CacheEvict(cacheNames = CATEGORY_CACHE, allEntries = true)
+    public BlogPost create(BlogPost blogPost) {
+        BlogPost savedItem = blogPostRepository.save(blogPost);
+        blogPostJdbcTemplateRepository.recordPostAdded(
+                savedItem.getCategory(), savedItem.getDatePosted());
+        return savedItem;
+    }
+
+    /**
+     * Inserts the posts in JDBC batches of hibernate.jdbc.batch_size rows
+     * and adds them to their categories with one statement per category.
+     */
+    @Transactional
+    @CacheEvict(cacheNames = CATEGORY_CACHE, allEntries = true)
+    public List<BlogPost> createAll(List<BlogPost> blogPosts) {
+        List<BlogPost> savedItems = new ArrayList<>();
+        blogPostRepository.saveAll(blogPosts).forEach(savedItems::add);
+        Map<String, Integer> addedPerCategory = new HashMap<>();
+        Map<String, Date> latestPerCategory = new HashMap<>();
+        for (BlogPost savedItem : savedItems) {
+            addedPerCategory.merge(savedItem.getCategory(), 1, Integer::sum);
+            latestPerCategory.merge(savedItem.getCategory(), savedItem.getDatePosted(),
+                    (latest, datePosted) -> datePosted.after(latest) ? datePosted : latest);
+        }
+        addedPerCategory.forEach((category, count) -> blogPostJdbcTemplateRepository
+                .recordPostsAdded(category, count, latestPerCategory.get(category)));
+        return savedItems;
+    }
+
+    /**
+     * Replaces a post. A null {@code expectedVersion} (no If-Match) updates
+     * whatever is stored. Once written, {@code blogPost} and its author carry
+     * the versions its ETag is made of.
+     */
+    @Transactional
+    @Caching(evict = {
+            @CacheEvict(cacheNames = ARTICLE_CACHE, key = "#p0.id"),
+            @CacheEvict(cacheNames = CATEGORY_CACHE, allEntries = true)})
+    public Outcome update(BlogPost blogPost, Long expectedVersion, long expectedAuthorVersion) {
+        PostingWrite written = blogPostJdbcTemplateRepository.updatePosting(
+                blogPost, expectedVersion, expectedAuthorVersion);
+        if (written == null) {
+            return missed(blogPost.getId(), expectedVersion);
+        }
+        blogPostRepository.updateContent(written.getBodyId(), blogPost.getContent());
+        blogPost.setVersion(written.getVersion());
+        if (written.getAuthorVersion() != null) {
+            blogPost.getAuthor().setVersion(written.getAuthorVersion());
+        }
+        if (!blogPost.getCategory().equals(written.getPreviousCategory())) {
+            blogPostJdbcTemplateRepository.recordPostRemoved(written.getPreviousCategory());
+            blogPostJdbcTemplateRepository.recordPostAdded(
+                    blogPost.getCategory(), blogPost.getDatePosted());
+        } else if (!sameInstant(blogPost.getDatePosted(), written.getPreviousDatePosted())) {
+            blogPostJdbcTemplateRepository.recordPostRedated(blogPost.getCategory());
+        }
+        return Outcome.WRITTEN;
+    }
+
+    /** Deletes a post and its body. */
+    @Transactional
+    @Caching(evict = {
+            @CacheEvict(cacheNames = ARTICLE_CACHE, key = "#p0"),
+            @CacheEvict(cacheNames = CATEGORY_CACHE, allEntries = true)})
+    public Outcome delete(long id, Long expectedVersion, long expectedAuthorVersion) {
+        PostingWrite deleted = blogPostJdbcTemplateRepository.deletePosting(
+                id, expectedVersion, expectedAuthorVersion);
+        if (deleted == null) {
+            return missed(id, expectedVersion);
+        }
+        blogPostRepository.deleteContent(deleted.getBodyId());
+        blogPostJdbcTemplateRepository.recordPostRemoved(deleted.getPreviousCategory());
+        return Outcome.WRITTEN;
+    }
+
+    // Only a conditional write that matched no row needs a second look
+    private Outcome missed(long id, Long expectedVersion) {
+        return expectedVersion != null && blogPostRepository.existsById(id)
+                ? Outcome.CHANGED : Outcome.MISSING;
+    }
+
+    private static boolean sameInstant(Date date, Date other) {
+        return date == null ? other == null : other != null && date.getTime() == other.getTime();
+    }
+}
@@ -0,0 +1,69 @@
+package com.spankinfresh.blog.data;
+
+import org.hibernate.dialect.Dialect;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.persistence.EntityManagerFactory;
+import javax.sql.DataSource;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Moves the pooled id sequences past the ids already stored. Posts and
+ * authors had IDENTITY ids before, so against a database from back then
+ * (ddl-auto=update creates the sequences at 1) the first insert would reuse
+ * an existing id. Runs once per start, like the category seeding.
+ */
+@Component
+public class IdSequences {
+
+    // The allocationSize of the entities' @SequenceGenerators; a pooled
+    // sequence value v hands out the ids v - 49 to v
+    static final int ALLOCATION_SIZE = 50;
+
+    // table -> sequence its ids come from
+    private static final Map<String, String> SEQUENCES = new LinkedHashMap<>();
+
+    static {
+        SEQUENCES.put("author", "author_seq");
+        SEQUENCES.put("blog_post", "blog_post_seq");
+        SEQUENCES.put("blog_post_content", "blog_post_content_seq");
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final Dialect dialect;
+
+    public IdSequences(DataSource dataSource, EntityManagerFactory entityManagerFactory) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.dialect = entityManagerFactory.unwrap(SessionFactoryImplementor.class)
+                .getJdbcServices().getDialect();
+    }
+
+    /**
+     * Restarts each sequence whose next value could hand out a stored id.
+     * Checking takes one value, which skips one block of ids on tables that
+     * have rows.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public void advancePastStoredIds() {
+        SEQUENCES.forEach((table, sequence) -> {
+            Long maxId = jdbcTemplate.queryForObject("select max(id) from " + table, Long.class);
+            if (maxId == null) {
+                return;
+            }
+            Long next = jdbcTemplate.queryForObject(
+                    dialect.getSequenceNextValString(sequence), Long.class);
+            if (next != null && next < maxId) {
+                jdbcTemplate.execute("alter sequence " + sequence +
+                        " restart with " + (maxId + ALLOCATION_SIZE));
+            }
+        });
+    }
+}
@@ -0,0 +1,58 @@
+package com.spankinfresh.blog.data;
+
+import com.spankinfresh.blog.domain.BlogPost;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Date;
+
+/**
+ * Opaque continuation token for keyset paging over blog posts ordered by
+ * {@code (date_posted desc, id desc)}. Clients only ever see the encoded form.
+ */
+public final class PageCursor {
+
+    private final Date datePosted;
+    private final long id;
+
+    public PageCursor(Date datePosted, long id) {
+        this.datePosted = datePosted;
+        this.id = id;
+    }
+
+    public static PageCursor after(BlogPost blogPost) {
+        Date datePosted = blogPost.getDatePosted() == null
+                ? new Date(0L) : blogPost.getDatePosted();
+        return new PageCursor(datePosted, blogPost.getId());
+    }
+
+    public static PageCursor decode(String token) {
+        try {
+            String decoded = new String(
+                    Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int separator = decoded.indexOf(':');
+            if (separator < 1) {
+                throw new IllegalArgumentException("Malformed cursor: " + token);
+            }
+            return new PageCursor(
+                    new Date(Long.parseLong(decoded.substring(0, separator))),
+                    Long.parseLong(decoded.substring(separator + 1)));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Malformed cursor: " + token, e);
+        }
+    }
+
+    public String encode() {
+        String raw = datePosted.getTime() + ":" + id;
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public Date getDatePosted() {
+        return datePosted;
+    }
+
+    public long getId() {
+        return id;
+    }
+}
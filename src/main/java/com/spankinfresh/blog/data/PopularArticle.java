@@ -0,0 +1,42 @@
+package com.spankinfresh.blog.data;
+
+import java.util.Date;
+
+/** A row of the most-read list: an article summary and its view count. */
+public class PopularArticle {
+
+    private final long id;
+    private final String title;
+    private final String category;
+    private final Date datePosted;
+    private final long viewCount;
+
+    public PopularArticle(long id, String title, String category, Date datePosted,
+                          long viewCount) {
+        this.id = id;
+        this.title = title;
+        this.category = category;
+        this.datePosted = datePosted;
+        this.viewCount = viewCount;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public String getCategory() {
+        return category;
+    }
+
+    public Date getDatePosted() {
+        return datePosted;
+    }
+
+    public long getViewCount() {
+        return viewCount;
+    }
+}
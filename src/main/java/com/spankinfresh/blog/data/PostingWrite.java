@@ -0,0 +1,47 @@
+package com.spankinfresh.blog.data;
+
+import java.util.Date;
+
+/**
+ * What a conditional update or delete of a post returned from the same
+ * statement: the row as it was, and after an update its new version and
+ * its author's version.
+ */
+public class PostingWrite {
+
+    private final String previousCategory;
+    private final Date previousDatePosted;
+    private final long bodyId;
+    private final long version;
+    private final Long authorVersion;
+
+    public PostingWrite(String previousCategory, Date previousDatePosted, long bodyId,
+                        long version, Long authorVersion) {
+        this.previousCategory = previousCategory;
+        this.previousDatePosted = previousDatePosted;
+        this.bodyId = bodyId;
+        this.version = version;
+        this.authorVersion = authorVersion;
+    }
+
+    public String getPreviousCategory() {
+        return previousCategory;
+    }
+
+    public Date getPreviousDatePosted() {
+        return previousDatePosted;
+    }
+
+    public long getBodyId() {
+        return bodyId;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    // Null when the post has no author
+    public Long getAuthorVersion() {
+        return authorVersion;
+    }
+}
@@ -0,0 +1,99 @@
+package com.spankinfresh.blog.data;
+
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.util.concurrent.Callable;
+
+/**
+ * Decides whether a connection requested on the current thread may come
+ * from a replica. Read-only transactions go to a replica unless the current
+ * request has been pinned to the primary (it writes, or follows a recent
+ * write by the same client); everything else goes to the primary.
+ * <p>
+ * Code that reads outside a Spring transaction, or must not read from a
+ * replica, states its target with {@link #call}.
+ */
+public final class ReadWriteRouting {
+
+    public enum Target { PRIMARY, REPLICA }
+
+    /** Request attribute that sends every read of the request to the primary. */
+    public static final String PRIMARY_REQUIRED_ATTRIBUTE =
+            ReadWriteRouting.class.getName() + ".PRIMARY_REQUIRED";
+
+    private static final ThreadLocal<Target> explicitTarget = new ThreadLocal<>();
+
+    private ReadWriteRouting() {
+    }
+
+    public static Target currentTarget() {
+        return targetFor(TransactionSynchronizationManager.isCurrentTransactionReadOnly());
+    }
+
+    /**
+     * Where a transaction that is being started will read; its read-only
+     * flag is only bound to the thread once it has begun.
+     */
+    public static Target targetFor(boolean readOnlyTransaction) {
+        if (isPrimaryRequired()) {
+            return Target.PRIMARY;
+        }
+        Target target = explicitTarget.get();
+        if (target != null) {
+            return target;
+        }
+        return readOnlyTransaction ? Target.REPLICA : Target.PRIMARY;
+    }
+
+    /**
+     * Where reads made on behalf of the current request should go, for work
+     * that will run later on another thread.
+     */
+    public static Target readTarget() {
+        return isPrimaryRequired() ? Target.PRIMARY : Target.REPLICA;
+    }
+
+    public static <T> T call(Target target, Callable<T> work) throws Exception {
+        Target previous = enter(target);
+        try {
+            return work.call();
+        } finally {
+            restore(previous);
+        }
+    }
+
+    public static void run(Target target, Runnable work) {
+        Target previous = enter(target);
+        try {
+            work.run();
+        } finally {
+            restore(previous);
+        }
+    }
+
+    private static Target enter(Target target) {
+        Target previous = explicitTarget.get();
+        explicitTarget.set(target);
+        return previous;
+    }
+
+    private static void restore(Target previous) {
+        if (previous == null) {
+            explicitTarget.remove();
+        } else {
+            explicitTarget.set(previous);
+        }
+    }
+
+    // Read from the servlet request itself: async work runs after the
+    // request thread has let go of it, when RequestAttributes refuse reads
+    private static boolean isPrimaryRequired() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        return attributes instanceof ServletRequestAttributes
+                && ((ServletRequestAttributes) attributes).getRequest()
+                .getAttribute(PRIMARY_REQUIRED_ATTRIBUTE) != null;
+    }
+}
@@ -0,0 +1,78 @@
+package com.spankinfresh.blog.data;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hands out connections from the primary pool, or from the replica pools in
+ * turn, as {@link ReadWriteRouting#currentTarget()} decides. Transaction
+ * managers take a connection when a transaction begins, before its
+ * read-only flag is published, so the physical connection is only chosen
+ * at the first statement.
+ * <p>
+ * Connections are counted per pool as {@value #METRIC_NAME}.
+ */
+public class ReadWriteRoutingDataSource extends LazyConnectionDataSourceProxy implements AutoCloseable {
+
+    public static final String METRIC_NAME = "blog.datasource.connections.routed";
+    public static final String PRIMARY = "primary";
+
+    private final List<HikariDataSource> pools = new ArrayList<>();
+
+    public ReadWriteRoutingDataSource(HikariDataSource primary, List<HikariDataSource> replicas,
+                                      MeterRegistry meterRegistry) {
+        pools.add(primary);
+        pools.addAll(replicas);
+        setTargetDataSource(new Router(primary, replicas, meterRegistry));
+        afterPropertiesSet();
+    }
+
+    @Override
+    public void close() {
+        pools.forEach(HikariDataSource::close);
+    }
+
+    private static final class Router extends AbstractRoutingDataSource {
+        private final List<String> replicaKeys = new ArrayList<>();
+        private final Map<String, Counter> routed = new HashMap<>();
+        private final AtomicInteger nextReplica = new AtomicInteger();
+
+        Router(HikariDataSource primary, List<HikariDataSource> replicas,
+               MeterRegistry meterRegistry) {
+            Map<Object, Object> targets = new HashMap<>();
+            targets.put(PRIMARY, primary);
+            for (HikariDataSource replica : replicas) {
+                replicaKeys.add(replica.getPoolName());
+                targets.put(replica.getPoolName(), replica);
+            }
+            for (Object key : targets.keySet()) {
+                routed.put((String) key, Counter.builder(METRIC_NAME)
+                        .description("Connections handed out by the read/write router")
+                        .tag("pool", (String) key).register(meterRegistry));
+            }
+            setTargetDataSources(targets);
+            setDefaultTargetDataSource(primary);
+            afterPropertiesSet();
+        }
+
+        @Override
+        protected Object determineCurrentLookupKey() {
+            String key = PRIMARY;
+            if (!replicaKeys.isEmpty()
+                    && ReadWriteRouting.currentTarget() == ReadWriteRouting.Target.REPLICA) {
+                key = replicaKeys.get(Math.floorMod(nextReplica.getAndIncrement(), replicaKeys.size()));
+            }
+            routed.get(key).increment();
+            return key;
+        }
+    }
+}
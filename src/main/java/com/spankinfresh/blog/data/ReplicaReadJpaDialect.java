@@ -0,0 +1,87 @@
+package com.spankinfresh.blog.data;
+
+import org.hibernate.CacheMode;
+import org.hibernate.Session;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.datasource.ConnectionHandle;
+import org.springframework.orm.jpa.JpaDialect;
+import org.springframework.transaction.TransactionDefinition;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceException;
+import java.sql.SQLException;
+
+/**
+ * Lets transactions that read from a replica use Hibernate's second-level
+ * cache without filling it. A replica can still return a row that a write
+ * on the primary has just evicted; caching it would serve the old version
+ * until the entry expires. Everything else is left to the dialect it wraps.
+ */
+public class ReplicaReadJpaDialect implements JpaDialect {
+
+    private final JpaDialect delegate;
+
+    public ReplicaReadJpaDialect(JpaDialect delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public Object beginTransaction(EntityManager entityManager, TransactionDefinition definition)
+            throws PersistenceException, SQLException {
+        Object transactionData = delegate.beginTransaction(entityManager, definition);
+        if (ReadWriteRouting.targetFor(definition.isReadOnly()) != ReadWriteRouting.Target.REPLICA) {
+            return transactionData;
+        }
+        // The request's EntityManager outlives the transaction (open-in-view)
+        Session session = entityManager.unwrap(Session.class);
+        ReplicaRead replicaRead = new ReplicaRead(transactionData, session, session.getCacheMode());
+        session.setCacheMode(CacheMode.GET);
+        return replicaRead;
+    }
+
+    @Override
+    public Object prepareTransaction(EntityManager entityManager, boolean readOnly, String name)
+            throws PersistenceException {
+        return delegate.prepareTransaction(entityManager, readOnly, name);
+    }
+
+    @Override
+    public void cleanupTransaction(Object transactionData) {
+        if (transactionData instanceof ReplicaRead) {
+            ReplicaRead replicaRead = (ReplicaRead) transactionData;
+            replicaRead.session.setCacheMode(replicaRead.previousCacheMode);
+            delegate.cleanupTransaction(replicaRead.transactionData);
+        } else {
+            delegate.cleanupTransaction(transactionData);
+        }
+    }
+
+    @Override
+    public ConnectionHandle getJdbcConnection(EntityManager entityManager, boolean readOnly)
+            throws PersistenceException, SQLException {
+        return delegate.getJdbcConnection(entityManager, readOnly);
+    }
+
+    @Override
+    public void releaseJdbcConnection(ConnectionHandle conHandle, EntityManager entityManager)
+            throws PersistenceException, SQLException {
+        delegate.releaseJdbcConnection(conHandle, entityManager);
+    }
+
+    @Override
+    public DataAccessException translateExceptionIfPossible(RuntimeException ex) {
+        return delegate.translateExceptionIfPossible(ex);
+    }
+
+    private static final class ReplicaRead {
+        final Object transactionData;
+        final Session session;
+        final CacheMode previousCacheMode;
+
+        ReplicaRead(Object transactionData, Session session, CacheMode previousCacheMode) {
+            this.transactionData = transactionData;
+            this.session = session;
+            this.previousCacheMode = previousCacheMode;
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.spankinfresh.blog.data;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.springframework.aop.framework.Advised;
+import org.springframework.aop.support.DefaultPointcutAdvisor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.core.annotation.AnnotationUtils;
+import org.springframework.data.repository.Repository;
+import org.springframework.stereotype.Component;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Times every call into the application's repositories (Spring Data and
+ * {@code @Repository} classes) as {@value #METRIC_NAME}, tagged with the
+ * repository bean name, the method and the exception thrown, if any.
+ * Repositories are already proxies (Spring Data, caching, transactions),
+ * so the timer is added as the outermost advice of that proxy and includes
+ * cache hits and transaction handling.
+ */
+@Component
+public class RepositoryMetrics implements BeanPostProcessor {
+
+    public static final String METRIC_NAME = "blog.repository.invocations";
+
+    private final ObjectProvider<MeterRegistry> meterRegistry;
+
+    public RepositoryMetrics(ObjectProvider<MeterRegistry> meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (bean instanceof Advised && isRepository(bean)) {
+            ((Advised) bean).addAdvisor(0, new DefaultPointcutAdvisor(timer(beanName)));
+        }
+        return bean;
+    }
+
+    private static boolean isRepository(Object bean) {
+        return bean instanceof Repository
+                || AnnotationUtils.findAnnotation(((Advised) bean).getTargetClass(),
+                org.springframework.stereotype.Repository.class) != null;
+    }
+
+    private MethodInterceptor timer(String repository) {
+        // Timers of calls that returned, built once per method; the ones for
+        // exceptions are rare and looked up in the registry each time
+        Map<Method, Timer> completed = new ConcurrentHashMap<>();
+        return invocation -> {
+            Method method = invocation.getMethod();
+            if (method.getDeclaringClass() == Object.class) {
+                return invocation.proceed();
+            }
+            MeterRegistry registry = meterRegistry.getIfAvailable();
+            if (registry == null) {
+                return invocation.proceed();
+            }
+            Timer.Sample sample = Timer.start(registry);
+            Object result;
+            try {
+                result = invocation.proceed();
+            } catch (Throwable e) {
+                sample.stop(timer(registry, repository, method, e.getClass().getSimpleName()));
+                throw e;
+            }
+            sample.stop(completed.computeIfAbsent(method,
+                    key -> timer(registry, repository, key, "none")));
+            return result;
+        };
+    }
+
+    private static Timer timer(MeterRegistry registry, String repository, Method method,
+                               String exception) {
+        return Timer.builder(METRIC_NAME)
+                .description("Repository method invocations")
+                .tag("repository", repository)
+                .tag("method", method.getName())
+                .tag("exception", exception)
+                .register(registry);
+    }
+}
@@ -0,0 +1,138 @@
+package com.spankinfresh.blog.data;
+
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.boot.autoconfigure.data.jpa.EntityManagerFactoryDependsOnPostProcessor;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.Types;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Brings a database written by an earlier version of the application to
+ * the current mapping before Hibernate starts. ddl-auto=update only adds
+ * missing tables and columns and validate only checks them, so changes to
+ * existing columns and the data in them are made here. Every step looks at
+ * the schema first and does nothing against an up-to-date database.
+ * Postgres and H2 are supported, as in pom.xml.
+ */
+@Component
+public class SchemaMigrations implements InitializingBean {
+
+    private static final List<Integer> CHARACTER_TYPES = Arrays.asList(Types.CHAR,
+            Types.VARCHAR, Types.LONGVARCHAR, Types.CLOB, Types.NCHAR, Types.NVARCHAR,
+            Types.LONGNVARCHAR, Types.NCLOB);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    public SchemaMigrations(DataSource dataSource) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.transactionTemplate =
+                new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        storeContentAsBytes("blog_post");
+        // One transaction, so on Postgres a failed move leaves the posts as
+        // they were; H2 commits each DDL statement
+        transactionTemplate.executeWithoutResult(status -> moveContentToBodies());
+        storeContentAsBytes("blog_post_content");
+        dropContentHashes();
+    }
+
+    // Articles were tagged with a digest of their content before the version
+    // column took over; nothing reads or writes it any more
+    private void dropContentHashes() {
+        if (columnType("blog_post", "content_hash") != null) {
+            jdbcTemplate.execute("alter table blog_post drop column content_hash");
+        }
+    }
+
+    /**
+     * Moves content kept in blog_post into one blog_post_content row per
+     * post. Bodies take the id of their post, and IdSequences advances
+     * blog_post_content_seq past them once the application is ready.
+     */
+    private void moveContentToBodies() {
+        if (columnType("blog_post", "content") == null) {
+            return;
+        }
+        if (columnType("blog_post_content", "id") == null) {
+            jdbcTemplate.execute("create table blog_post_content (id bigint not null, " +
+                    "content " + (isPostgres() ? "bytea" : "varbinary(2000000)") +
+                    ", primary key (id))");
+        }
+        if (columnType("blog_post", "body_id") == null) {
+            jdbcTemplate.execute("alter table blog_post add column body_id bigint");
+        }
+        jdbcTemplate.update("insert into blog_post_content (id, content) " +
+                "select id, content from blog_post where body_id is null");
+        jdbcTemplate.update("update blog_post set body_id = id where body_id is null");
+        jdbcTemplate.execute("alter table blog_post alter column body_id set not null");
+        jdbcTemplate.execute("alter table blog_post drop column content");
+    }
+
+    /**
+     * ContentConverter binds content as bytes; a content column created
+     * while content was mapped as text is converted to UTF-8 bytes, which
+     * the converter reads back as they were.
+     */
+    private void storeContentAsBytes(String table) {
+        Integer type = columnType(table, "content");
+        if (type == null || !CHARACTER_TYPES.contains(type)) {
+            return;
+        }
+        if (isPostgres()) {
+            jdbcTemplate.execute("alter table " + table + " alter column content " +
+                    "type bytea using convert_to(content, 'UTF8')");
+        } else {
+            jdbcTemplate.execute("alter table " + table +
+                    " add column content_bytes varbinary(2000000)");
+            jdbcTemplate.update("update " + table + " set content_bytes = stringtoutf8(content)");
+            jdbcTemplate.execute("alter table " + table + " drop column content");
+            jdbcTemplate.execute("alter table " + table +
+                    " alter column content_bytes rename to content");
+        }
+    }
+
+    private boolean isPostgres() {
+        return jdbcTemplate.execute((ConnectionCallback<Boolean>) connection ->
+                connection.getMetaData().getDatabaseProductName().equals("PostgreSQL"));
+    }
+
+    // The java.sql.Types code of the column, or null if there is none
+    private Integer columnType(String table, String column) {
+        return jdbcTemplate.execute((ConnectionCallback<Integer>) connection -> {
+            DatabaseMetaData metaData = connection.getMetaData();
+            boolean upperCase = metaData.storesUpperCaseIdentifiers();
+            try (ResultSet columns = metaData.getColumns(connection.getCatalog(),
+                    connection.getSchema(), identifier(table, upperCase),
+                    identifier(column, upperCase))) {
+                return columns.next() ? columns.getInt("DATA_TYPE") : null;
+            }
+        });
+    }
+
+    private static String identifier(String name, boolean upperCase) {
+        return upperCase ? name.toUpperCase(Locale.ROOT) : name;
+    }
+
+    /** Runs the migrations before the EntityManagerFactory is built. */
+    @Configuration
+    static class MigrateBeforeHibernate extends EntityManagerFactoryDependsOnPostProcessor {
+        MigrateBeforeHibernate() {
+            super(SchemaMigrations.class);
+        }
+    }
+}
@@ -1,15 +1,27 @@
 package com.spankinfresh.blog.domain;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
 import javax.persistence.*;
 import javax.validation.constraints.NotNull;
 import javax.validation.constraints.Size;
 import java.util.Date;
 
 @Entity
+@Table(indexes = {
+        @Index(name = "idx_blog_post_date_posted_id",
+                columnList = "datePosted desc, id desc"),
+        @Index(name = "idx_blog_post_category_date_posted_id",
+                columnList = "category, datePosted desc, id desc"),
+        @Index(name = "idx_blog_post_view_count_id",
+                columnList = "viewCount desc, id desc")})
 public class BlogPost {
 
+    // Pooled sequence: one round trip hands out 50 ids and, unlike
+    // IDENTITY, lets Hibernate batch the inserts.
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "blog_post_seq")
+    @SequenceGenerator(name = "blog_post_seq", sequenceName = "blog_post_seq", allocationSize = 50)
     private long id;
 
     @NotNull
@@ -23,13 +35,27 @@ public class BlogPost {
     @Size(min = 1, max = 200 , message = "Please enter a title up to 200 characters in length")
     private String title;
 
-    @NotNull
-    @Size(min = 1, max = 500000, message = "Content is required")
-    private String content;
+    @JsonIgnore
+    @OneToOne(fetch = FetchType.LAZY, optional = false,
+            cascade = CascadeType.ALL, orphanRemoval = true)
+    private BlogPostContent body;
 
     @ManyToOne
     private Author author;
 
+    // Bumped by every write, in the same statement. Together with the
+    // author's version it is the article's strong ETag, so a conditional
+    // GET or write is checked without reading content.
+    @JsonIgnore
+    @Version
+    @Column(nullable = false, columnDefinition = "bigint default 0")
+    private long version;
+
+    // Maintained in batches by ArticleViewCounts, never by entity updates
+    @JsonIgnore
+    @Column(nullable = false, updatable = false, columnDefinition = "bigint default 0")
+    private long viewCount;
+
     public BlogPost() {
     }
 
@@ -47,7 +73,7 @@ public class BlogPost {
         this.category = category;
         this.datePosted = datePosted;
         this.title = title;
-        this.content = content;
+        setContent(content);
     }
 
     public long getId() {
@@ -90,11 +116,30 @@ public class BlogPost {
         this.title = title;
     }
 
+    // Reading content initializes the lazy body
+    @NotNull
+    @Size(min = 1, max = 500000, message = "Content is required")
     public String getContent() {
-        return content;
+        return body == null ? null : body.getContent();
     }
 
     public void setContent(String content) {
-        this.content = content;
+        if (body == null) {
+            body = new BlogPostContent(content);
+        } else {
+            body.setContent(content);
+        }
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
+    public long getViewCount() {
+        return viewCount;
     }
 }
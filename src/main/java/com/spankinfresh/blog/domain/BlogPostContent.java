@@ -0,0 +1,49 @@
+package com.spankinfresh.blog.domain;
+
+import org.hibernate.annotations.BatchSize;
+
+import javax.persistence.*;
+
+/**
+ * The body of a {@link BlogPost}, kept in its own table so that post
+ * metadata can be read without touching the (potentially very large)
+ * content column. Lazy bodies left uninitialized in one persistence
+ * context are loaded together, up to a listing page at a time.
+ */
+@Entity
+@BatchSize(size = 100)
+public class BlogPostContent {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "blog_post_content_seq")
+    @SequenceGenerator(name = "blog_post_content_seq",
+            sequenceName = "blog_post_content_seq", allocationSize = 50)
+    private long id;
+
+    @Convert(converter = ContentConverter.class)
+    @Column(length = 2000000)
+    private String content;
+
+    public BlogPostContent() {
+    }
+
+    public BlogPostContent(String content) {
+        this.content = content;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public void setId(long id) {
+        this.id = id;
+    }
+
+    public String getContent() {
+        return content;
+    }
+
+    public void setContent(String content) {
+        this.content = content;
+    }
+}
@@ -1,10 +1,23 @@
 package com.spankinfresh.blog.domain;
 
+import javax.persistence.*;
+import java.util.Date;
+
+@Entity
 public class Category {
 
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
     private long id;
+
+    @Column(unique = true, nullable = false, length = 200)
     private String categoryName;
 
+    private long postCount;
+
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date latestDatePosted;
+
     public long getId() {
         return id;
     }
@@ -20,4 +33,20 @@ public class Category {
     public void setCategoryName(String categoryName) {
         this.categoryName = categoryName;
     }
+
+    public long getPostCount() {
+        return postCount;
+    }
+
+    public void setPostCount(long postCount) {
+        this.postCount = postCount;
+    }
+
+    public Date getLatestDatePosted() {
+        return latestDatePosted;
+    }
+
+    public void setLatestDatePosted(Date latestDatePosted) {
+        this.latestDatePosted = latestDatePosted;
+    }
 }
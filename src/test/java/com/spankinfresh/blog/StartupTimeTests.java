@@ -0,0 +1,120 @@
+package com.spankinfresh.blog;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Cold-start benchmark: every start is a fresh JVM running BlogApplication
+ * until it is ready, timed by the "JVM running for" figure Spring Boot logs
+ * on startup, so class loading counts as it does for a new instance. Each
+ * setup is started startup.rounds times (default 2), alternating between
+ * setups, and the best time is compared. Logs of every start are kept under
+ * target/startup.
+ * <p>
+ * The embedded database has no schema to validate, so the fast-startup runs
+ * create it like the default ones do; validate versus update only differs
+ * against a real database.
+ * <p>
+ * Tagged "startup" and left out of mvn test, as it takes about a minute and
+ * its timings depend on the machine; run it with mvn -Pstartup test.
+ */
+@Tag("startup")
+class StartupTimeTests {
+
+	private static final Pattern STARTED = Pattern.compile(
+			"Started BlogApplication in [0-9.]+ seconds \\(JVM running for ([0-9.]+)\\)");
+	private static final File LOGS = new File("target/startup");
+	private static final File APPCDS = new File("target/appcds");
+	private static final List<String> EXIT_WHEN_READY = Arrays.asList(
+			"--blog.startup.exit-when-ready=true", "--server.port=0");
+	private static final List<String> FAST_STARTUP = Arrays.asList(
+			"--spring.profiles.active=fast-startup", "--spring.jpa.hibernate.ddl-auto=create-drop");
+
+	private final int rounds = Integer.getInteger("startup.rounds", 2);
+
+	@Test
+	@DisplayName("S01 - The fast-startup profile starts faster than the defaults")
+	void test01() throws Exception {
+		List<String> classpath = Arrays.asList("-cp", System.getProperty("java.class.path"),
+				BlogApplication.class.getName());
+		compare("default", command(classpath), "fast-startup", command(classpath, FAST_STARTUP));
+	}
+
+	@Test
+	@DisplayName("S02 - The AppCDS archive shortens a fast-startup start")
+	void test02() throws Exception {
+		// Built by mvn -Pappcds package
+		File archive = new File(APPCDS, "blog.jsa");
+		File[] jars = APPCDS.listFiles((directory, name) -> name.endsWith("-appcds.jar"));
+		assumeTrue(archive.isFile() && jars != null && jars.length == 1);
+		List<String> jar = Arrays.asList("-jar", jars[0].getPath());
+		List<String> shared = new ArrayList<>();
+		shared.add("-XX:SharedArchiveFile=" + archive.getPath());
+		shared.addAll(jar);
+		compare("fast-startup", command(jar, FAST_STARTUP),
+				"fast-startup+appcds", command(shared, FAST_STARTUP));
+	}
+
+	// Asserts that the candidate's best start beats the baseline's
+	private void compare(String baseline, List<String> baselineCommand,
+			String candidate, List<String> candidateCommand) throws Exception {
+		double[] best = {Double.MAX_VALUE, Double.MAX_VALUE};
+		for (int round = 1; round <= rounds; round++) {
+			best[0] = Math.min(best[0], secondsToStart(baseline + "-" + round, baselineCommand));
+			best[1] = Math.min(best[1], secondsToStart(candidate + "-" + round, candidateCommand));
+		}
+		assertTrue(best[1] < best[0], String.format("Best of %d starts: %s %.3fs, %s %.3fs",
+				rounds, baseline, best[0], candidate, best[1]));
+	}
+
+	@SafeVarargs
+	private static List<String> command(List<String> launch, List<String>... arguments) {
+		List<String> command = new ArrayList<>();
+		command.add(new File(System.getProperty("java.home"), "bin/java").getPath());
+		command.addAll(launch);
+		command.addAll(EXIT_WHEN_READY);
+		for (List<String> argument : arguments) {
+			command.addAll(argument);
+		}
+		return command;
+	}
+
+	private static double secondsToStart(String name, List<String> command)
+			throws IOException, InterruptedException {
+		assertTrue(LOGS.isDirectory() || LOGS.mkdirs());
+		File log = new File(LOGS, name + ".log");
+		Process process = new ProcessBuilder(command)
+				.redirectErrorStream(true)
+				.redirectOutput(log)
+				.start();
+		if (!process.waitFor(3, TimeUnit.MINUTES)) {
+			process.destroyForcibly();
+			fail(name + " did not start and exit, see " + log);
+		}
+		assertEquals(0, process.exitValue(), name + " failed, see " + log);
+		for (String line : Files.readAllLines(log.toPath(), StandardCharsets.UTF_8)) {
+			Matcher started = STARTED.matcher(line);
+			if (started.find()) {
+				return Double.parseDouble(started.group(1));
+			}
+		}
+		return fail(name + " logged no startup time, see " + log);
+	}
+}
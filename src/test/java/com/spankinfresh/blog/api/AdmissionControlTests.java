@@ -0,0 +1,131 @@
+package com.spankinfresh.blog.api;
+
+import com.spankinfresh.blog.data.BlogPostRepository;
+import com.spankinfresh.blog.domain.BlogPost;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.RequestPostProcessor;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static com.spankinfresh.blog.api.AsyncRequests.perform;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = {
+        "spring.datasource.generate-unique-name=true",
+        "blog.async.enabled=true",
+        "blog.admission.client.requests-per-second=1",
+        "blog.admission.client.burst=3",
+        "blog.admission.listing.max-concurrency=1"})
+@AutoConfigureMockMvc
+public class AdmissionControlTests {
+    private static final String RESOURCE_URI = "/api/articles";
+
+    @MockBean
+    private BlogPostRepository mockRepository;
+
+    private static RequestPostProcessor from(String address) {
+        return request -> {
+            request.setRemoteAddr(address);
+            return request;
+        };
+    }
+
+    @Test
+    @DisplayName("AD01 - A client that spends its burst gets 429 without affecting others")
+    public void test01(@Autowired MockMvc mockMvc,
+                       @Autowired MeterRegistry meterRegistry) throws Exception {
+        for (int i = 0; i < 3; i++) {
+            mockMvc.perform(get("/api/authors").with(from("10.0.1.1")))
+                    .andExpect(status().isOk());
+        }
+        mockMvc.perform(get("/api/authors").with(from("10.0.1.1")))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().string("Retry-After", "1"));
+        mockMvc.perform(get("/api/authors").with(from("10.0.1.2")))
+                .andExpect(status().isOk());
+        assertEquals(1.0, meterRegistry.get("blog.admission.rate-limited").counter().count());
+    }
+
+    @Test
+    @DisplayName("AD02 - Listings over the concurrency limit are shed while lookups are served")
+    public void test02(@Autowired MockMvc mockMvc,
+                       @Autowired MeterRegistry meterRegistry) throws Exception {
+        CountDownLatch listingStarted = new CountDownLatch(1);
+        CountDownLatch releaseListing = new CountDownLatch(1);
+        when(mockRepository.findAllWithBodies()).thenAnswer(invocation -> {
+            listingStarted.countDown();
+            releaseListing.await(10, TimeUnit.SECONDS);
+            return Collections.emptyList();
+        });
+        when(mockRepository.findById(1L)).thenReturn(
+                Optional.of(new BlogPost(1L, null, "category", null, "title", "content")));
+        MvcResult blocked = mockMvc.perform(get(RESOURCE_URI).with(from("10.0.2.1")))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        assertTrue(listingStarted.await(5, TimeUnit.SECONDS));
+
+        mockMvc.perform(get(RESOURCE_URI).with(from("10.0.2.2")))
+                .andExpect(request().asyncNotStarted())
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string("Retry-After", "1"));
+        perform(mockMvc, get(RESOURCE_URI + "/1").with(from("10.0.2.2")))
+                .andExpect(status().isOk());
+        assertEquals(1.0, meterRegistry.get("blog.admission.rejected")
+                .tag("route", "listing").counter().count());
+
+        releaseListing.countDown();
+        mockMvc.perform(asyncDispatch(blocked)).andExpect(status().isOk());
+        perform(mockMvc, get(RESOURCE_URI).with(from("10.0.2.3")))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    @DisplayName("AD03 - The limit backs off on slow requests and recovers additively")
+    public void test03() {
+        AdmissionControlFilter.AdaptiveLimit limit = new AdmissionControlFilter.AdaptiveLimit(
+                "test", new AdmissionControlFilter.Route(10, Duration.ofMillis(100)),
+                new SimpleMeterRegistry());
+        long fast = TimeUnit.MILLISECONDS.toNanos(5);
+        assertTrue(limit.tryAcquire());
+        limit.release(TimeUnit.MILLISECONDS.toNanos(500), 200);
+        assertEquals(9, limit.getLimit());
+        assertTrue(limit.tryAcquire());
+        limit.release(fast, 503);
+        assertEquals(8, limit.getLimit());
+
+        for (int i = 0; i < 8; i++) {
+            assertTrue(limit.tryAcquire());
+        }
+        assertFalse(limit.tryAcquire());
+        for (int i = 0; i < 8; i++) {
+            limit.release(fast, 200);
+        }
+        assertEquals(9, limit.getLimit());
+        for (int i = 0; i < 20; i++) {
+            limit.tryAcquire();
+            limit.release(fast, 200);
+        }
+        assertEquals(10, limit.getLimit());
+    }
+}
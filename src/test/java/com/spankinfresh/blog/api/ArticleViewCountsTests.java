@@ -0,0 +1,136 @@
+package com.spankinfresh.blog.api;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.spankinfresh.blog.data.ArticleViewCounts;
+import com.spankinfresh.blog.domain.BlogPost;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static com.spankinfresh.blog.api.AsyncRequests.perform;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// Flushes are triggered by the tests, never by the schedule
+@SpringBootTest(properties = {"spring.datasource.generate-unique-name=true",
+        "blog.views.flush-interval=1h"})
+@AutoConfigureMockMvc
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+public class ArticleViewCountsTests {
+    private static final String RESOURCE_URI = "/api/articles";
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    private long createPosting(MockMvc mockMvc, String title) throws Exception {
+        String response = mockMvc.perform(post(RESOURCE_URI)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(mapper.writeValueAsString(
+                        new BlogPost(0L, null, "views", null, title, "content"))))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString();
+        return mapper.readValue(response, BlogPost.class).getId();
+    }
+
+    private void view(MockMvc mockMvc, long id, int times) throws Exception {
+        for (int i = 0; i < times; i++) {
+            perform(mockMvc, get(RESOURCE_URI + "/" + id)).andExpect(status().isOk());
+        }
+    }
+
+    private long storedViews(JdbcTemplate jdbcTemplate, long id) {
+        return jdbcTemplate.queryForObject(
+                "select view_count from blog_post where id = ?", Long.class, id);
+    }
+
+    @Test
+    @DisplayName("VC01 - Views are written in batches and ranked by /popular")
+    public void test01(@Autowired MockMvc mockMvc, @Autowired JdbcTemplate jdbcTemplate,
+                       @Autowired ArticleViewCounts articleViewCounts) throws Exception {
+        long first = createPosting(mockMvc, "first");
+        long second = createPosting(mockMvc, "second");
+        createPosting(mockMvc, "unread");
+        view(mockMvc, first, 1);
+        view(mockMvc, second, 3);
+        assertEquals(0, storedViews(jdbcTemplate, second));
+        mockMvc.perform(get(RESOURCE_URI + "/popular"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(0));
+
+        articleViewCounts.flush();
+        assertEquals(1, storedViews(jdbcTemplate, first));
+        assertEquals(3, storedViews(jdbcTemplate, second));
+        mockMvc.perform(get(RESOURCE_URI + "/popular"))
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$.[0].id").value(second))
+                .andExpect(jsonPath("$.[0].title").value("second"))
+                .andExpect(jsonPath("$.[0].viewCount").value(3))
+                .andExpect(jsonPath("$.[1].id").value(first));
+        mockMvc.perform(get(RESOURCE_URI + "/popular?limit=1"))
+                .andExpect(jsonPath("$.length()").value(1));
+    }
+
+    @Test
+    @DisplayName("VC02 - Each flush adds only the views since the previous one")
+    public void test02(@Autowired MockMvc mockMvc, @Autowired JdbcTemplate jdbcTemplate,
+                       @Autowired ArticleViewCounts articleViewCounts) throws Exception {
+        long id = createPosting(mockMvc, "title");
+        view(mockMvc, id, 2);
+        articleViewCounts.flush();
+        articleViewCounts.flush();
+        assertEquals(2, storedViews(jdbcTemplate, id));
+
+        // Revalidated reads are views too
+        String eTag = perform(mockMvc, get(RESOURCE_URI + "/" + id))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        perform(mockMvc, get(RESOURCE_URI + "/" + id).header(HttpHeaders.IF_NONE_MATCH, eTag))
+                .andExpect(status().isNotModified());
+        articleViewCounts.flush();
+        assertEquals(4, storedViews(jdbcTemplate, id));
+    }
+
+    @Test
+    @DisplayName("VC03 - Deleted articles drop out of /popular")
+    public void test03(@Autowired MockMvc mockMvc,
+                       @Autowired ArticleViewCounts articleViewCounts) throws Exception {
+        long id = createPosting(mockMvc, "title");
+        view(mockMvc, id, 1);
+        articleViewCounts.flush();
+        mockMvc.perform(delete(RESOURCE_URI + "/" + id)).andExpect(status().isNoContent());
+        articleViewCounts.flush();
+        mockMvc.perform(get(RESOURCE_URI + "/popular"))
+                .andExpect(jsonPath("$.length()").value(0));
+    }
+
+    @Test
+    @DisplayName("VC04 - Articles without views for a whole interval stop being tracked")
+    public void test04(@Autowired MockMvc mockMvc, @Autowired JdbcTemplate jdbcTemplate,
+                       @Autowired ArticleViewCounts articleViewCounts,
+                       @Autowired MeterRegistry meterRegistry) throws Exception {
+        long id = createPosting(mockMvc, "title");
+        view(mockMvc, id, 2);
+        articleViewCounts.flush();
+        assertEquals(1, tracked(meterRegistry));
+        articleViewCounts.flush();
+        assertEquals(1, tracked(meterRegistry));
+        articleViewCounts.flush();
+        assertEquals(0, tracked(meterRegistry));
+
+        view(mockMvc, id, 1);
+        assertEquals(1, tracked(meterRegistry));
+        articleViewCounts.flush();
+        assertEquals(3, storedViews(jdbcTemplate, id));
+    }
+
+    private static double tracked(MeterRegistry meterRegistry) {
+        return meterRegistry.get(ArticleViewCounts.TRACKED_METRIC_NAME).gauge().value();
+    }
+}
@@ -0,0 +1,60 @@
+package com.spankinfresh.blog.api;
+
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.RequestBuilder;
+import org.springframework.test.web.servlet.ResultActions;
+import org.springframework.test.web.servlet.ResultHandler;
+import org.springframework.test.web.servlet.ResultMatcher;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+
+/**
+ * Performs a request and, when the handler went asynchronous (article
+ * reads with blog.async.enabled), waits for it and performs the async dispatch,
+ * so expectations apply to the finished response either way. Also waits
+ * for the background work that writes leave behind.
+ */
+final class AsyncRequests {
+
+    private AsyncRequests() {
+    }
+
+    static ResultActions perform(MockMvc mockMvc, RequestBuilder request) throws Exception {
+        MvcResult result = mockMvc.perform(request).andReturn();
+        if (result.getRequest().isAsyncStarted()) {
+            return mockMvc.perform(asyncDispatch(result));
+        }
+        return new ResultActions() {
+            @Override
+            public ResultActions andExpect(ResultMatcher matcher) throws Exception {
+                matcher.match(result);
+                return this;
+            }
+
+            @Override
+            public ResultActions andDo(ResultHandler handler) throws Exception {
+                handler.handle(result);
+                return this;
+            }
+
+            @Override
+            public MvcResult andReturn() {
+                return result;
+            }
+        };
+    }
+
+    /** Until the snapshots reflect every write made so far. */
+    static void awaitSnapshots(SummarySnapshots summarySnapshots) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (summarySnapshots.isRebuildPending()) {
+            if (System.nanoTime() > deadline) {
+                throw new IllegalStateException("Snapshot rebuild still pending");
+            }
+            Thread.sleep(5);
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.spankinfresh.blog.api;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.spankinfresh.blog.domain.Author;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import javax.persistence.EntityManagerFactory;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = "spring.datasource.generate-unique-name=true")
+@AutoConfigureMockMvc
+public class AuthorCacheTests {
+    private static final String RESOURCE_URI = "/api/authors";
+    private final ObjectMapper mapper = new ObjectMapper();
+    private Statistics statistics;
+
+    @BeforeEach
+    public void resetStatistics(@Autowired EntityManagerFactory entityManagerFactory) {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    private long createAuthor(MockMvc mockMvc, String email) throws Exception {
+        String response = mockMvc.perform(post(RESOURCE_URI)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(mapper.writeValueAsString(new Author(0L, "Ada", "Lovelace", email))))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString();
+        return mapper.readValue(response, Author.class).getId();
+    }
+
+    @Test
+    @DisplayName("AC01 - Author lookups are served from the cache and writes evict")
+    public void test01(@Autowired MockMvc mockMvc) throws Exception {
+        long id = createAuthor(mockMvc, "ac01@example.com");
+        String uri = RESOURCE_URI + "/" + id;
+        mockMvc.perform(get(uri)).andExpect(status().isOk());
+        long statements = statistics.getPrepareStatementCount();
+        mockMvc.perform(get(uri))
+                .andExpect(jsonPath("$.[0].firstName").value("Ada"));
+        assertEquals(statements, statistics.getPrepareStatementCount());
+        assertTrue(statistics.getDomainDataRegionStatistics("authors").getHitCount() > 0);
+
+        mockMvc.perform(put(uri)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(mapper.writeValueAsString(
+                        new Author(id, "Augusta", "Lovelace", "ac01@example.com"))))
+                .andExpect(status().isNoContent());
+        mockMvc.perform(get(uri))
+                .andExpect(jsonPath("$.[0].firstName").value("Augusta"));
+
+        mockMvc.perform(delete(uri)).andExpect(status().isNoContent());
+        mockMvc.perform(get(uri)).andExpect(status().isNotFound());
+    }
+
+    @Test
+    @DisplayName("AC02 - The author list is a cached query invalidated by writes")
+    public void test02(@Autowired MockMvc mockMvc) throws Exception {
+        long id = createAuthor(mockMvc, "ac02@example.com");
+        mockMvc.perform(get(RESOURCE_URI)).andExpect(status().isOk());
+        long statements = statistics.getPrepareStatementCount();
+        mockMvc.perform(get(RESOURCE_URI))
+                .andExpect(jsonPath("$[?(@.emailAddress == 'ac02@example.com')]").isNotEmpty());
+        assertEquals(statements, statistics.getPrepareStatementCount());
+        assertTrue(statistics.getQueryCacheHitCount() > 0);
+
+        createAuthor(mockMvc, "ac02-second@example.com");
+        mockMvc.perform(get(RESOURCE_URI))
+                .andExpect(jsonPath("$[?(@.emailAddress == 'ac02-second@example.com')]")
+                        .isNotEmpty());
+        mockMvc.perform(delete(RESOURCE_URI + "/" + id)).andExpect(status().isNoContent());
+        mockMvc.perform(get(RESOURCE_URI))
+                .andExpect(jsonPath("$[?(@.emailAddress == 'ac02@example.com')]").isEmpty());
+    }
+
+    @Test
+    @DisplayName("AC03 - Cache statistics are published")
+    public void test03(@Autowired MockMvc mockMvc) throws Exception {
+        long id = createAuthor(mockMvc, "ac03@example.com");
+        mockMvc.perform(get(RESOURCE_URI + "/" + id)).andExpect(status().isOk());
+        mockMvc.perform(get(RESOURCE_URI + "/" + id)).andExpect(status().isOk());
+        mockMvc.perform(get("/actuator/prometheus"))
+                .andExpect(content().string(containsString(
+                        "hibernate_second_level_cache_requests_total{entityManagerFactory=" +
+                                "\"entityManagerFactory\",result=\"hit\",}")))
+                .andExpect(content().string(containsString(
+                        "hibernate_cache_query_requests_total")));
+    }
+}
@@ -0,0 +1,164 @@
+package com.spankinfresh.blog.api;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.spankinfresh.blog.domain.Author;
+import com.spankinfresh.blog.domain.BlogPost;
+import com.spankinfresh.blog.domain.Category;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.util.StreamUtils;
+
+import java.io.ByteArrayInputStream;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import static com.spankinfresh.blog.api.AsyncRequests.awaitSnapshots;
+import static com.spankinfresh.blog.api.AsyncRequests.perform;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = "spring.datasource.generate-unique-name=true")
+@AutoConfigureMockMvc
+@DirtiesContext
+public class BinaryFormatTests {
+    private static final String RESOURCE_URI = "/api/articles";
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final ObjectMapper cbor = new ObjectMapper(new CBORFactory());
+    private final ObjectMapper smile = new ObjectMapper(new SmileFactory());
+
+    private long createPosting(MockMvc mockMvc, String category) throws Exception {
+        String response = mockMvc.perform(post(RESOURCE_URI)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(mapper.writeValueAsString(
+                        new BlogPost(0L, null, category, null, "title", "content"))))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString();
+        return mapper.readValue(response, BlogPost.class).getId();
+    }
+
+    @Test
+    @DisplayName("BF01 - Articles are sent as CBOR on request and as JSON otherwise")
+    public void test01(@Autowired MockMvc mockMvc) throws Exception {
+        long id = createPosting(mockMvc, "bf01");
+        MockHttpServletResponse response = perform(mockMvc, get(RESOURCE_URI + "/" + id)
+                .accept(BinaryMediaTypes.CBOR))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(BinaryMediaTypes.CBOR))
+                .andReturn().getResponse();
+        assertTrue(response.getHeaders(HttpHeaders.VARY).contains(HttpHeaders.ACCEPT));
+        JsonNode article = cbor.readTree(response.getContentAsByteArray()).get(0);
+        assertEquals("bf01", article.get("category").asText());
+        assertEquals("content", article.get("content").asText());
+        // Epoch milliseconds rather than the ISO string JSON carries
+        assertTrue(article.get("datePosted").isNumber());
+        assertFalse(article.has("author"));
+
+        perform(mockMvc, get(RESOURCE_URI + "/" + id))
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$.[0].datePosted").isString())
+                .andExpect(jsonPath("$.[0].author").hasJsonPath());
+        perform(mockMvc, get(RESOURCE_URI + "/" + id).accept(MediaType.ALL))
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON));
+    }
+
+    @Test
+    @DisplayName("BF02 - Smile request bodies are accepted and answered in Smile")
+    public void test02(@Autowired MockMvc mockMvc) throws Exception {
+        byte[] body = smile.writeValueAsBytes(
+                new BlogPost(0L, null, "bf02", null, "smile title", "smile content"));
+        byte[] created = mockMvc.perform(post(RESOURCE_URI)
+                .contentType(BinaryMediaTypes.SMILE)
+                .accept(BinaryMediaTypes.SMILE)
+                .content(body))
+                .andExpect(status().isCreated())
+                .andExpect(content().contentType(BinaryMediaTypes.SMILE))
+                .andReturn().getResponse().getContentAsByteArray();
+        BlogPost saved = smile.readValue(created, BlogPost.class);
+        assertEquals("smile title", saved.getTitle());
+
+        perform(mockMvc, get(RESOURCE_URI + "/" + saved.getId()))
+                .andExpect(jsonPath("$.[0].content").value("smile content"));
+
+        byte[] author = mockMvc.perform(post("/api/authors")
+                .contentType(BinaryMediaTypes.CBOR)
+                .accept(BinaryMediaTypes.CBOR)
+                .content(cbor.writeValueAsBytes(
+                        new Author(0L, "Ada", "Lovelace", "ada@example.com"))))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsByteArray();
+        assertEquals("Lovelace", cbor.readValue(author, Author.class).getLastName());
+    }
+
+    @Test
+    @DisplayName("BF03 - Summary and category snapshots are kept in every format")
+    public void test03(@Autowired MockMvc mockMvc,
+                       @Autowired SummarySnapshots summarySnapshots) throws Exception {
+        long id = createPosting(mockMvc, "bf03");
+        awaitSnapshots(summarySnapshots);
+
+        MockHttpServletResponse json = mockMvc.perform(get("/api/summary/articles"))
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+                .andReturn().getResponse();
+        mockMvc.perform(get("/api/summary/articles").accept(MediaType.ALL))
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON));
+        MockHttpServletResponse smileSummaries = mockMvc.perform(get("/api/summary/articles")
+                .accept(BinaryMediaTypes.SMILE))
+                .andExpect(content().contentType(BinaryMediaTypes.SMILE))
+                .andReturn().getResponse();
+        List<BlogPost> summaries = smile.readValue(smileSummaries.getContentAsByteArray(),
+                new TypeReference<List<BlogPost>>() { });
+        assertTrue(summaries.stream().anyMatch(summary -> summary.getId() == id));
+        assertTrue(smileSummaries.getContentAsByteArray().length
+                < json.getContentAsByteArray().length);
+        String eTag = smileSummaries.getHeader(HttpHeaders.ETAG);
+        assertNotEquals(json.getHeader(HttpHeaders.ETAG), eTag);
+        mockMvc.perform(get("/api/summary/articles").accept(BinaryMediaTypes.SMILE)
+                .header(HttpHeaders.IF_NONE_MATCH, eTag))
+                .andExpect(status().isNotModified());
+
+        MockHttpServletResponse gzipped = mockMvc.perform(get("/api/summary/articles")
+                .accept(BinaryMediaTypes.SMILE)
+                .header(HttpHeaders.ACCEPT_ENCODING, "gzip"))
+                .andReturn().getResponse();
+        assertArrayEquals(smileSummaries.getContentAsByteArray(), StreamUtils.copyToByteArray(
+                new GZIPInputStream(new ByteArrayInputStream(gzipped.getContentAsByteArray()))));
+        // Once each, from the interceptor and from the snapshot
+        List<String> vary = gzipped.getHeaders(HttpHeaders.VARY);
+        assertEquals(1, Collections.frequency(vary, HttpHeaders.ACCEPT));
+        assertEquals(1, Collections.frequency(vary, HttpHeaders.ACCEPT_ENCODING));
+
+        byte[] page = mockMvc.perform(get("/api/summary/articles?limit=1")
+                .accept(BinaryMediaTypes.CBOR))
+                .andExpect(content().contentType(BinaryMediaTypes.CBOR))
+                .andReturn().getResponse().getContentAsByteArray();
+        assertEquals(1, cbor.readValue(page, new TypeReference<List<BlogPost>>() { }).size());
+
+        byte[] categories = mockMvc.perform(get("/api/categories")
+                .accept(BinaryMediaTypes.CBOR))
+                .andExpect(content().contentType(BinaryMediaTypes.CBOR))
+                .andReturn().getResponse().getContentAsByteArray();
+        assertTrue(cbor.readValue(categories, new TypeReference<List<Category>>() { }).stream()
+                .anyMatch(category -> "bf03".equals(category.getCategoryName())));
+    }
+}
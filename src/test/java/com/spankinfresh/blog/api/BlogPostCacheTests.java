@@ -0,0 +1,102 @@
+package com.spankinfresh.blog.api;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.spankinfresh.blog.data.BlogPostRepository;
+import com.spankinfresh.blog.domain.BlogPost;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.Date;
+
+import static com.spankinfresh.blog.api.AsyncRequests.perform;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = "spring.datasource.generate-unique-name=true")
+@AutoConfigureMockMvc
+public class BlogPostCacheTests {
+    private static final String RESOURCE_URI = "/api/articles";
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @Autowired
+    private BlogPostRepository blogPostRepository;
+    private Cache articleCache;
+    private BlogPost savedPosting;
+
+    @BeforeEach
+    public void setUp(@Autowired CacheManager cacheManager) {
+        articleCache = cacheManager.getCache(BlogPostRepository.ARTICLE_CACHE);
+        articleCache.clear();
+        savedPosting = blogPostRepository.save(
+                new BlogPost(0L, null, "category", new Date(), "title", "content"));
+    }
+
+    @Test
+    @DisplayName("C01 - Repeated GET by ID is served from the cache")
+    public void test01(@Autowired MockMvc mockMvc,
+                       @Autowired MeterRegistry meterRegistry) throws Exception {
+        double hitsBefore = cacheGets(meterRegistry, "hit");
+        double missesBefore = cacheGets(meterRegistry, "miss");
+        perform(mockMvc, get(RESOURCE_URI + "/" + savedPosting.getId()))
+                .andExpect(status().isOk());
+        perform(mockMvc, get(RESOURCE_URI + "/" + savedPosting.getId()))
+                .andExpect(status().isOk());
+        assertEquals(missesBefore + 1, cacheGets(meterRegistry, "miss"));
+        assertEquals(hitsBefore + 1, cacheGets(meterRegistry, "hit"));
+    }
+
+    @Test
+    @DisplayName("C02 - Not found results are not cached")
+    public void test02(@Autowired MockMvc mockMvc) throws Exception {
+        perform(mockMvc, get(RESOURCE_URI + "/99999"))
+                .andExpect(status().isNotFound());
+        assertNull(articleCache.get(99999L));
+    }
+
+    @Test
+    @DisplayName("C03 - PUT evicts the cached article")
+    public void test03(@Autowired MockMvc mockMvc) throws Exception {
+        String uri = RESOURCE_URI + "/" + savedPosting.getId();
+        perform(mockMvc, get(uri)).andExpect(status().isOk());
+        assertNotNull(articleCache.get(savedPosting.getId()));
+        savedPosting.setTitle("updated title");
+        mockMvc.perform(put(uri)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(mapper.writeValueAsString(savedPosting)))
+                .andExpect(status().isNoContent());
+        assertNull(articleCache.get(savedPosting.getId()));
+        perform(mockMvc, get(uri))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.[0].title").value("updated title"));
+    }
+
+    @Test
+    @DisplayName("C04 - DELETE evicts the cached article")
+    public void test04(@Autowired MockMvc mockMvc) throws Exception {
+        String uri = RESOURCE_URI + "/" + savedPosting.getId();
+        perform(mockMvc, get(uri)).andExpect(status().isOk());
+        mockMvc.perform(delete(uri)).andExpect(status().isNoContent());
+        assertNull(articleCache.get(savedPosting.getId()));
+        perform(mockMvc, get(uri)).andExpect(status().isNotFound());
+    }
+
+    private double cacheGets(MeterRegistry meterRegistry, String result) {
+        return meterRegistry.get("cache.gets")
+                .tag("cache", BlogPostRepository.ARTICLE_CACHE)
+                .tag("result", result)
+                .functionCounter().count();
+    }
+}
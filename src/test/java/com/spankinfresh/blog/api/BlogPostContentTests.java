@@ -0,0 +1,142 @@
+package com.spankinfresh.blog.api;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.spankinfresh.blog.domain.BlogPost;
+import com.spankinfresh.blog.domain.BlogPostContent;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+
+import javax.persistence.EntityManagerFactory;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+
+import static com.spankinfresh.blog.api.AsyncRequests.perform;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@SpringBootTest(properties = {
+        "spring.datasource.generate-unique-name=true",
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "blog.content.compression.enabled=true"})
+@AutoConfigureMockMvc
+public class BlogPostContentTests {
+    private static final String RESOURCE_URI = "/api/articles";
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    private static String longContent() {
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 2000; i++) {
+            content.append("Paragraph ").append(i).append(" of a long article. ");
+        }
+        return content.toString();
+    }
+
+    private long createPosting(MockMvc mockMvc, String content) throws Exception {
+        String response = mockMvc.perform(post(RESOURCE_URI)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(mapper.writeValueAsString(
+                        new BlogPost(0L, null, "category", null, "title", content))))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString();
+        return mapper.readValue(response, BlogPost.class).getId();
+    }
+
+    @Test
+    @DisplayName("CT01 - Content is compressed at rest and read back transparently")
+    public void test01(@Autowired MockMvc mockMvc,
+                       @Autowired JdbcTemplate jdbcTemplate) throws Exception {
+        String content = longContent();
+        long id = createPosting(mockMvc, content);
+        byte[] stored = jdbcTemplate.queryForObject(
+                "select c.content from blog_post p join blog_post_content c " +
+                        "on c.id = p.body_id where p.id = ?", byte[].class, id);
+        assertTrue(stored.length < content.length() / 4);
+        perform(mockMvc, get(RESOURCE_URI + "/" + id))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.[0].content").value(content));
+    }
+
+    @Test
+    @DisplayName("CT02 - Stored gzip is served as-is to clients that accept it")
+    public void test02(@Autowired MockMvc mockMvc) throws Exception {
+        String content = longContent();
+        long id = createPosting(mockMvc, content);
+        byte[] body = perform(mockMvc, get(RESOURCE_URI + "/" + id + "/content")
+                .header("Accept-Encoding", "br, gzip"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Encoding", "gzip"))
+                .andReturn().getResponse().getContentAsByteArray();
+        assertEquals(content, gunzip(body));
+
+        perform(mockMvc, get(RESOURCE_URI + "/" + id + "/content"))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist("Content-Encoding"))
+                .andExpect(content().string(content));
+    }
+
+    @Test
+    @DisplayName("CT03 - Short content is stored uncompressed")
+    public void test03(@Autowired MockMvc mockMvc) throws Exception {
+        long id = createPosting(mockMvc, "short");
+        perform(mockMvc, get(RESOURCE_URI + "/" + id + "/content")
+                .header("Accept-Encoding", "gzip"))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist("Content-Encoding"))
+                .andExpect(content().string("short"));
+        perform(mockMvc, get(RESOURCE_URI + "/0/content"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    @DisplayName("CT04 - Field projections never load content bodies")
+    public void test04(@Autowired MockMvc mockMvc,
+                       @Autowired EntityManagerFactory entityManagerFactory) throws Exception {
+        createPosting(mockMvc, "first");
+        createPosting(mockMvc, "second");
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        String projected = perform(mockMvc, get(RESOURCE_URI + "?fields=id,title"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.[0].title").value("title"))
+                .andExpect(jsonPath("$.[0].content").doesNotExist())
+                .andExpect(jsonPath("$.[0].category").doesNotExist())
+                .andReturn().getResponse().getContentAsString();
+        perform(mockMvc, get(RESOURCE_URI + "/category?categoryName=category&limit=1&fields=title"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1));
+        assertEquals(0, statistics.getEntityStatistics(
+                BlogPostContent.class.getName()).getLoadCount());
+
+        perform(mockMvc, get(RESOURCE_URI))
+                .andExpect(jsonPath("$.[0].content").isNotEmpty());
+        assertEquals(mapper.readTree(projected).size(), statistics.getEntityStatistics(
+                BlogPostContent.class.getName()).getLoadCount());
+        perform(mockMvc, get(RESOURCE_URI + "?fields=id,bogus"))
+                .andExpect(status().isBadRequest());
+    }
+
+    private static String gunzip(byte[] compressed) throws Exception {
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return new String(out.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+}
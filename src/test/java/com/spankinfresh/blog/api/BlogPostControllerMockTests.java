@@ -1,7 +1,10 @@
 package com.spankinfresh.blog.api;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.spankinfresh.blog.data.BlogPostJdbcTemplateRepository;
 import com.spankinfresh.blog.data.BlogPostRepository;
+import com.spankinfresh.blog.data.PageCursor;
+import com.spankinfresh.blog.data.PostingWrite;
 import com.spankinfresh.blog.domain.Author;
 import com.spankinfresh.blog.domain.BlogPost;
 import org.junit.jupiter.api.DisplayName;
@@ -10,16 +13,27 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.data.domain.Pageable;
 import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.mock.web.MockHttpServletResponse;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.MvcResult;
 
-import java.util.Collection;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
@@ -30,6 +44,8 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 public class BlogPostControllerMockTests {
     @MockBean
     private BlogPostRepository mockRepository;
+    @SpyBean
+    private BlogPostJdbcTemplateRepository spyJdbcRepository;
 
     private static final String RESOURCE_URI = "/api/articles";
     private final ObjectMapper mapper = new ObjectMapper();
@@ -108,29 +124,29 @@ public class BlogPostControllerMockTests {
         verify(mockRepository, never()).save(any(BlogPost.class));
     }
 
-    private Collection<BlogPost> createMockBlogEntryList(BlogPost... itemArgs) {
+    private List<BlogPost> createMockBlogEntryList(BlogPost... itemArgs) {
         HashMap<Long, BlogPost> blogEntries = new HashMap<>();
         for (BlogPost blogPost : itemArgs) {
             blogEntries.put(blogPost.getId(), blogPost);
         }
-        return blogEntries.values();
+        return new ArrayList<>(blogEntries.values());
     }
 
     @Test
     @DisplayName("T05 - GET All works for empty list")
     public void test05(@Autowired MockMvc mockMvc) throws Exception {
-        when(mockRepository.findAll()).
+        when(mockRepository.findAllWithBodies()).
                 thenReturn(createMockBlogEntryList());
         mockMvc.perform(get(RESOURCE_URI)).andExpect(status().isOk())
                 .andExpect(content().contentType(MediaType.APPLICATION_JSON))
                 .andExpect(jsonPath("$.length()").value(0));
-        verify(mockRepository, times(1)).findAll();
+        verify(mockRepository, times(1)).findAllWithBodies();
     }
 
     @Test
     @DisplayName("T06 - GET All works for single item list")
     public void test06(@Autowired MockMvc mockMvc) throws Exception {
-        when(mockRepository.findAll())
+        when(mockRepository.findAllWithBodies())
                 .thenReturn(createMockBlogEntryList(testPosting));
         mockMvc.perform(get(RESOURCE_URI)).andExpect(status().isOk())
                 .andExpect(content().contentType(MediaType.APPLICATION_JSON))
@@ -142,7 +158,7 @@ public class BlogPostControllerMockTests {
                         "$.[0].category").value(testPosting.getCategory()))
                 .andExpect(jsonPath(
                         "$.[0].content").value(testPosting.getContent()));
-        verify(mockRepository, times(1)).findAll();
+        verify(mockRepository, times(1)).findAllWithBodies();
     }
 
     @Test
@@ -184,24 +200,45 @@ public class BlogPostControllerMockTests {
     @Test
     @DisplayName("T09 - PUT works as expected")
     public void test09(@Autowired MockMvc mockMvc) throws Exception {
-        when(mockRepository.existsById(anyLong())).thenReturn(true);
+        doReturn(new PostingWrite("category", null, 7L, 1L, 0L)).when(spyJdbcRepository)
+                .updatePosting(any(BlogPost.class), isNull(), anyLong());
         mockMvc.perform(put(RESOURCE_URI + "/100")
                 .contentType(MediaType.APPLICATION_JSON)
                 .content(mapper.writeValueAsString(putTestPosting)))
-                .andExpect(status().isNoContent());
-        verify(mockRepository,
-                times(1)).save(any(BlogPost.class));
+                .andExpect(status().isNoContent())
+                .andExpect(header().string("ETag", "\"1-0\""));
+        verify(spyJdbcRepository,
+                times(1)).updatePosting(any(BlogPost.class), isNull(), anyLong());
+        verify(mockRepository, times(1)).updateContent(7L, "content");
+        verify(spyJdbcRepository, never()).recordPostRemoved(anyString());
+        verify(mockRepository, never()).save(any(BlogPost.class));
+        verify(mockRepository, never()).existsById(anyLong());
     }
 
     @Test
     @DisplayName("T10 - PUT with invalid ID works as expected")
     public void test10(@Autowired MockMvc mockMvc) throws Exception {
-        when(mockRepository.existsById(anyLong())).thenReturn(false);
+        doReturn(null).when(spyJdbcRepository)
+                .updatePosting(any(BlogPost.class), any(), anyLong());
         mockMvc.perform(put(RESOURCE_URI + "/100")
                 .contentType(MediaType.APPLICATION_JSON)
                 .content(mapper.writeValueAsString(putTestPosting)))
                 .andExpect(status().isNotFound());
-        verify(mockRepository, never()).save(any(BlogPost.class));
+        verify(mockRepository, never()).updateContent(anyLong(), anyString());
+        verify(mockRepository, never()).existsById(anyLong());
+    }
+
+    @Test
+    @DisplayName("T10b - PUT with a stale If-Match returns precondition failed")
+    public void test10b(@Autowired MockMvc mockMvc) throws Exception {
+        doReturn(null).when(spyJdbcRepository).updatePosting(any(BlogPost.class), eq(4L), eq(0L));
+        when(mockRepository.existsById(100L)).thenReturn(true);
+        mockMvc.perform(put(RESOURCE_URI + "/100")
+                .header("If-Match", "\"4-0\"")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(mapper.writeValueAsString(putTestPosting)))
+                .andExpect(status().isPreconditionFailed());
+        verify(mockRepository, never()).updateContent(anyLong(), anyString());
     }
 
     @Test
@@ -244,22 +281,22 @@ public class BlogPostControllerMockTests {
     @Test
     @DisplayName("T12 - DELETE existing item returns no content")
     public void test12 (@Autowired MockMvc mockMvc) throws Exception {
-        when(mockRepository.findById(1L))
-                .thenReturn(Optional.of(testPosting));
+        doReturn(new PostingWrite("category", null, 7L, 0L, null)).when(spyJdbcRepository)
+                .deletePosting(1L, null, BlogPostRepository.NO_AUTHOR_VERSION);
         mockMvc.perform(delete(RESOURCE_URI + "/1"))
                 .andExpect(status().isNoContent());
-        verify(mockRepository,
-                times(1)).delete(any(BlogPost.class));
+        verify(mockRepository, times(1)).deleteContent(7L);
+        verify(spyJdbcRepository, times(1)).recordPostRemoved("category");
+        verify(mockRepository, never()).findById(anyLong());
     }
 
     @Test
     @DisplayName("T13 - DELETE nonexistent item returns not found")
     public void test13 (@Autowired MockMvc mockMvc) throws Exception {
-        when(mockRepository.findById(anyLong()))
-                .thenReturn(Optional.empty());
+        doReturn(null).when(spyJdbcRepository).deletePosting(anyLong(), any(), anyLong());
         mockMvc.perform(delete(RESOURCE_URI + "/1"))
                 .andExpect(status().isNotFound());
-        verify(mockRepository, never()).delete(any(BlogPost.class));
+        verify(mockRepository, never()).deleteContent(anyLong());
     }
 
     @Test
@@ -271,4 +308,120 @@ public class BlogPostControllerMockTests {
                 .andExpect(status().isBadRequest());
         verify(mockRepository, never()).save(any(BlogPost.class));
     }
+
+    @Test
+    @DisplayName("T15 - GET with limit returns one page and a next link")
+    public void test15(@Autowired MockMvc mockMvc) throws Exception {
+        Date now = new Date();
+        when(mockRepository.findFirstPage(any(Pageable.class))).thenReturn(Arrays.asList(
+                new BlogPost(3L, author, "category", now, "three", "content"),
+                new BlogPost(2L, author, "category", now, "two", "content"),
+                new BlogPost(1L, author, "category", now, "one", "content")));
+        MvcResult result = mockMvc.perform(get(RESOURCE_URI + "?limit=2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$.[1].id").value(2L))
+                .andReturn();
+        String link = result.getResponse().getHeader("Link");
+        String expectedCursor = PageCursor.after(
+                new BlogPost(2L, author, "category", now, "two", "content")).encode();
+        assertTrue(link.contains("cursor=" + expectedCursor));
+        assertTrue(link.endsWith("rel=\"next\""));
+        verify(mockRepository, never()).findAllWithBodies();
+    }
+
+    @Test
+    @DisplayName("T16 - GET last page omits the next link")
+    public void test16(@Autowired MockMvc mockMvc) throws Exception {
+        when(mockRepository.findPageAfter(any(Date.class), anyLong(), any(Pageable.class)))
+                .thenReturn(createMockBlogEntryList(testPosting).stream()
+                        .collect(Collectors.toList()));
+        String cursor = new PageCursor(new Date(), 5L).encode();
+        MvcResult result = mockMvc.perform(get(RESOURCE_URI + "?cursor=" + cursor))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andReturn();
+        assertNull(result.getResponse().getHeader("Link"));
+    }
+
+    @Test
+    @DisplayName("T17 - GET with malformed cursor returns bad request")
+    public void test17(@Autowired MockMvc mockMvc) throws Exception {
+        mockMvc.perform(get(RESOURCE_URI + "?cursor=not-a-cursor"))
+                .andExpect(status().isBadRequest());
+        verify(mockRepository, never()).findPageAfter(
+                any(Date.class), anyLong(), any(Pageable.class));
+    }
+
+    @Test
+    @DisplayName("T18 - GET stream writes one JSON document per line")
+    public void test18(@Autowired MockMvc mockMvc,
+                       @Autowired JdbcTemplate jdbcTemplate) throws Exception {
+        byte[] content = "content".getBytes(StandardCharsets.UTF_8);
+        jdbcTemplate.update("insert into blog_post_content (id, content) values (900, ?)", content);
+        jdbcTemplate.update("insert into blog_post_content (id, content) values (901, ?)", content);
+        jdbcTemplate.update("insert into blog_post (id, category, date_posted, title, body_id) " +
+                "values (900, 'category', current_timestamp, 'streamed one', 900)");
+        jdbcTemplate.update("insert into blog_post (id, category, date_posted, title, body_id) " +
+                "values (901, 'category', current_timestamp, 'streamed two', 901)");
+        try {
+            MvcResult result = mockMvc.perform(get(RESOURCE_URI + "/stream"))
+                    .andExpect(request().asyncStarted())
+                    .andReturn();
+            assertEquals(600_000L, result.getRequest().getAsyncContext().getTimeout());
+            String body = mockMvc.perform(asyncDispatch(result))
+                    .andExpect(status().isOk())
+                    .andExpect(content().contentType(BlogPostController.NDJSON_VALUE))
+                    .andReturn().getResponse().getContentAsString();
+            String[] lines = body.trim().split("\n");
+            assertEquals(2, lines.length);
+            assertEquals(901L, mapper.readValue(lines[0], BlogPost.class).getId());
+            assertEquals("streamed one", mapper.readValue(lines[1], BlogPost.class).getTitle());
+            verify(mockRepository, never()).findAllWithBodies();
+        } finally {
+            jdbcTemplate.update("delete from blog_post where id in (900, 901)");
+            jdbcTemplate.update("delete from blog_post_content where id in (900, 901)");
+        }
+    }
+
+    @Test
+    @DisplayName("T19 - GET by ID with matching If-None-Match returns not modified")
+    public void test19(@Autowired MockMvc mockMvc) throws Exception {
+        when(mockRepository.findVersionsById(1L))
+                .thenReturn(Collections.singletonList(new Object[]{4L, 3L}));
+        mockMvc.perform(get(RESOURCE_URI + "/1")
+                .header("If-None-Match", "\"4-3\""))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string("ETag", "\"4-3\""))
+                .andExpect(content().string(""));
+        verify(mockRepository, never()).findById(anyLong());
+    }
+
+    @Test
+    @DisplayName("T20 - GET by ID returns its version and author version as ETag")
+    public void test20(@Autowired MockMvc mockMvc) throws Exception {
+        Author editedAuthor = new Author(0L, "first", "last", "foobar.com");
+        editedAuthor.setVersion(3L);
+        BlogPost editedPosting = new BlogPost(1L, editedAuthor, "category", null, "title", "content");
+        editedPosting.setVersion(4L);
+        when(mockRepository.findVersionsById(1L))
+                .thenReturn(Collections.singletonList(new Object[]{4L, 3L}));
+        when(mockRepository.findById(1L)).thenReturn(Optional.of(editedPosting));
+        mockMvc.perform(get(RESOURCE_URI + "/1")
+                .header("If-None-Match", "\"4-2\""))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"4-3\""))
+                .andExpect(jsonPath("$.[0].version").doesNotExist());
+    }
+
+    @Test
+    @DisplayName("T21 - GET summary with matching If-None-Match returns not modified")
+    public void test21(@Autowired MockMvc mockMvc) throws Exception {
+        String eTag = mockMvc.perform(get("/api/summary/articles"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader("ETag");
+        mockMvc.perform(get("/api/summary/articles").header("If-None-Match", eTag))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+    }
 }
@@ -0,0 +1,133 @@
+package com.spankinfresh.blog.api;
+
+import com.spankinfresh.blog.data.AuthorRepository;
+import com.spankinfresh.blog.data.BlogPostRepository;
+import com.spankinfresh.blog.data.BlogPostSearchIndex;
+import com.spankinfresh.blog.domain.Author;
+import com.spankinfresh.blog.domain.BlogPost;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.Date;
+
+import static com.spankinfresh.blog.api.AsyncRequests.perform;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Listing endpoints must issue a fixed number of SQL statements no matter
+ * how many posts or distinct authors a page holds. There are more posts than
+ * a batch of lazily loaded bodies (@BatchSize on BlogPostContent) takes.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.generate-unique-name=true",
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "spring.cache.type=none"})
+@AutoConfigureMockMvc
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+public class BlogPostQueryCountTests {
+    private static final String RESOURCE_URI = "/api/articles";
+    private static final int AUTHORS = 4;
+    private static final int POSTS = 120;
+
+    @Autowired
+    private MockMvc mockMvc;
+    private Statistics statistics;
+    private long anyPostId;
+
+    @BeforeAll
+    public void seed(@Autowired AuthorRepository authorRepository,
+                     @Autowired BlogPostRepository blogPostRepository,
+                     @Autowired BlogPostSearchIndex searchIndex,
+                     @Autowired EntityManagerFactory entityManagerFactory) {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        Author[] authors = new Author[AUTHORS];
+        for (int i = 0; i < AUTHORS; i++) {
+            authors[i] = authorRepository.save(
+                    new Author(0L, "first" + i, "last" + i, "author" + i + "@example.com"));
+        }
+        for (int i = 0; i < POSTS; i++) {
+            anyPostId = blogPostRepository.save(new BlogPost(0L, authors[i % AUTHORS],
+                    "category", new Date(), "title " + i, "content " + i)).getId();
+        }
+        searchIndex.rebuild();
+    }
+
+    @BeforeEach
+    public void resetStatistics() {
+        statistics.clear();
+    }
+
+    @Test
+    @DisplayName("Q01 - GET all loads posts, authors and bodies in one statement")
+    public void test01() throws Exception {
+        perform(mockMvc, get(RESOURCE_URI))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(POSTS))
+                .andExpect(jsonPath("$.[0].author.firstName").isNotEmpty());
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    @DisplayName("Q02 - GET all without content is a single statement")
+    public void test02() throws Exception {
+        perform(mockMvc, get(RESOURCE_URI + "?fields=id,title,author"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.[0].author.lastName").isNotEmpty());
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    @DisplayName("Q03 - GET of the largest page loads its bodies in one batch")
+    public void test03() throws Exception {
+        perform(mockMvc, get(RESOURCE_URI + "?limit=" + KeysetPage.MAX_LIMIT))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(KeysetPage.MAX_LIMIT));
+        assertEquals(2, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    @DisplayName("Q04 - GET by category is one statement, two when paged")
+    public void test04() throws Exception {
+        perform(mockMvc, get(RESOURCE_URI + "/category?categoryName=category"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(POSTS));
+        assertEquals(1, statistics.getPrepareStatementCount());
+        statistics.clear();
+        perform(mockMvc, get(RESOURCE_URI + "/category?categoryName=category&limit=5"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(5));
+        assertEquals(2, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    @DisplayName("Q05 - GET by ID is a single statement")
+    public void test05() throws Exception {
+        perform(mockMvc, get(RESOURCE_URI + "/" + anyPostId))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.[0].author.firstName").isNotEmpty())
+                .andExpect(jsonPath("$.[0].content").isNotEmpty());
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    @DisplayName("Q06 - Search results load in two statements")
+    public void test06() throws Exception {
+        perform(mockMvc, get(RESOURCE_URI + "/search?q=content&limit=" + KeysetPage.MAX_LIMIT))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(KeysetPage.MAX_LIMIT));
+        assertEquals(2, statistics.getPrepareStatementCount());
+    }
+}
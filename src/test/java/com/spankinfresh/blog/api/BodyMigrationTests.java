@@ -0,0 +1,47 @@
+package com.spankinfresh.blog.api;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.spankinfresh.blog.domain.BlogPost;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static com.spankinfresh.blog.api.AsyncRequests.perform;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// Starts against the schema from before blog_post_content, see
+// SchemaMigrationTests
+@SpringBootTest(properties = {"spring.datasource.generate-unique-name=true",
+        "spring.jpa.hibernate.ddl-auto=update",
+        "spring.datasource.schema=classpath:legacy-inline-content.sql"})
+@AutoConfigureMockMvc
+public class BodyMigrationTests {
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @Test
+    @DisplayName("BM01 - Content kept in blog_post is moved to its own table")
+    public void test01(@Autowired MockMvc mockMvc) throws Exception {
+        perform(mockMvc, get("/api/articles/1000"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.[0].content").value("legacy content"));
+        perform(mockMvc, get("/api/articles/1000/content"))
+                .andExpect(status().isOk());
+
+        String created = mockMvc.perform(post("/api/articles")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(mapper.writeValueAsString(
+                        new BlogPost(0L, null, "bm01", null, "title", "new content"))))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString();
+        long id = mapper.readValue(created, BlogPost.class).getId();
+        perform(mockMvc, get("/api/articles/" + id))
+                .andExpect(jsonPath("$.[0].content").value("new content"));
+    }
+}
@@ -0,0 +1,269 @@
+package com.spankinfresh.blog.api;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.spankinfresh.blog.domain.Author;
+import com.spankinfresh.blog.domain.BlogPost;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.sql.Timestamp;
+import java.util.Collections;
+import java.util.Date;
+
+import static com.spankinfresh.blog.api.AsyncRequests.awaitSnapshots;
+import static com.spankinfresh.blog.api.AsyncRequests.perform;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// Compression is on so the content update is seen going through the converter
+@SpringBootTest(properties = {"spring.datasource.generate-unique-name=true",
+        "blog.content.compression.enabled=true"})
+@AutoConfigureMockMvc
+public class ConditionalWriteTests {
+    private static final String RESOURCE_URI = "/api/articles";
+    private static final String LONG_CONTENT =
+            String.join("", Collections.nCopies(100, "compressible "));
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    private long createPosting(MockMvc mockMvc, String category) throws Exception {
+        String response = mockMvc.perform(post(RESOURCE_URI)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(mapper.writeValueAsString(
+                        new BlogPost(0L, null, category, null, "title", "content"))))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString();
+        return mapper.readValue(response, BlogPost.class).getId();
+    }
+
+    private String eTag(MockMvc mockMvc, long id) throws Exception {
+        return perform(mockMvc, get(RESOURCE_URI + "/" + id))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+    }
+
+    private String json(long id, String category, String title, String content)
+            throws Exception {
+        return mapper.writeValueAsString(new BlogPost(id, null, category, null, title, content));
+    }
+
+    @Test
+    @DisplayName("CW01 - PUT with the current ETag applies and a stale one is refused")
+    public void test01(@Autowired MockMvc mockMvc,
+                       @Autowired SummarySnapshots summarySnapshots) throws Exception {
+        long id = createPosting(mockMvc, "cw01");
+        String original = eTag(mockMvc, id);
+        assertEquals("\"0\"", original);
+
+        String updated = mockMvc.perform(put(RESOURCE_URI + "/" + id)
+                .header(HttpHeaders.IF_MATCH, original)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(json(id, "cw01-moved", "new title", LONG_CONTENT)))
+                .andExpect(status().isNoContent())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        assertEquals("\"1\"", updated);
+
+        mockMvc.perform(put(RESOURCE_URI + "/" + id)
+                .header(HttpHeaders.IF_MATCH, original)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(json(id, "cw01", "lost update", "content")))
+                .andExpect(status().isPreconditionFailed());
+
+        perform(mockMvc, get(RESOURCE_URI + "/" + id))
+                .andExpect(header().string(HttpHeaders.ETAG, updated))
+                .andExpect(jsonPath("$.[0].title").value("new title"))
+                .andExpect(jsonPath("$.[0].category").value("cw01-moved"))
+                .andExpect(jsonPath("$.[0].content").value(LONG_CONTENT));
+        perform(mockMvc, get(RESOURCE_URI + "/" + id + "/content")
+                .header(HttpHeaders.ACCEPT_ENCODING, "gzip"))
+                .andExpect(header().string(HttpHeaders.CONTENT_ENCODING, "gzip"));
+        awaitSnapshots(summarySnapshots);
+        mockMvc.perform(get("/api/categories"))
+                .andExpect(jsonPath("$[?(@.categoryName == 'cw01')]").isEmpty())
+                .andExpect(jsonPath("$[?(@.categoryName == 'cw01-moved')].postCount").value(1));
+    }
+
+    @Test
+    @DisplayName("CW02 - DELETE honours If-Match and reports a missing post")
+    public void test02(@Autowired MockMvc mockMvc,
+                       @Autowired SummarySnapshots summarySnapshots) throws Exception {
+        long id = createPosting(mockMvc, "cw02");
+        String current = eTag(mockMvc, id);
+        mockMvc.perform(delete(RESOURCE_URI + "/" + id)
+                .header(HttpHeaders.IF_MATCH, "\"99\""))
+                .andExpect(status().isPreconditionFailed());
+        mockMvc.perform(delete(RESOURCE_URI + "/" + id)
+                .header(HttpHeaders.IF_MATCH, current))
+                .andExpect(status().isNoContent());
+        mockMvc.perform(delete(RESOURCE_URI + "/" + id)
+                .header(HttpHeaders.IF_MATCH, current))
+                .andExpect(status().isNotFound());
+        perform(mockMvc, get(RESOURCE_URI + "/" + id))
+                .andExpect(status().isNotFound());
+        perform(mockMvc, get(RESOURCE_URI + "/" + id + "/content"))
+                .andExpect(status().isNotFound());
+        awaitSnapshots(summarySnapshots);
+        mockMvc.perform(get("/api/categories"))
+                .andExpect(jsonPath("$[?(@.categoryName == 'cw02')]").isEmpty());
+    }
+
+    @Test
+    @DisplayName("CW03 - Weak, listed and malformed If-Match values never match")
+    public void test03(@Autowired MockMvc mockMvc) throws Exception {
+        long id = createPosting(mockMvc, "cw03");
+        String current = eTag(mockMvc, id);
+        for (String ifMatch : new String[]{"W/" + current, current + ", \"other\"", "unquoted"}) {
+            mockMvc.perform(put(RESOURCE_URI + "/" + id)
+                    .header(HttpHeaders.IF_MATCH, ifMatch)
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(json(id, "cw03", "title", "content")))
+                    .andExpect(status().isPreconditionFailed());
+        }
+        mockMvc.perform(put(RESOURCE_URI + "/" + id)
+                .header(HttpHeaders.IF_MATCH, "*")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(json(id, "cw03", "any version", "content")))
+                .andExpect(status().isNoContent());
+        mockMvc.perform(put(RESOURCE_URI + "/" + (id + 1000))
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(json(id + 1000, "cw03", "title", "content")))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    @DisplayName("CW04 - Author writes are conditional on the version ETag")
+    public void test04(@Autowired MockMvc mockMvc) throws Exception {
+        String response = mockMvc.perform(post("/api/authors")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(mapper.writeValueAsString(
+                        new Author(0L, "Ada", "Lovelace", "ada@example.com"))))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString();
+        long id = mapper.readValue(response, Author.class).getId();
+        String uri = "/api/authors/" + id;
+        mockMvc.perform(get(uri))
+                .andExpect(header().string(HttpHeaders.ETAG, "\"0\""));
+
+        String renamed = mapper.writeValueAsString(
+                new Author(id, "Augusta", "Lovelace", "ada@example.com"));
+        mockMvc.perform(put(uri).header(HttpHeaders.IF_MATCH, "\"0\"")
+                .contentType(MediaType.APPLICATION_JSON).content(renamed))
+                .andExpect(status().isNoContent());
+        mockMvc.perform(put(uri).header(HttpHeaders.IF_MATCH, "\"0\"")
+                .contentType(MediaType.APPLICATION_JSON).content(renamed))
+                .andExpect(status().isPreconditionFailed());
+        mockMvc.perform(get(uri))
+                .andExpect(header().string(HttpHeaders.ETAG, "\"1\""))
+                .andExpect(jsonPath("$.[0].firstName").value("Augusta"));
+
+        mockMvc.perform(delete(uri).header(HttpHeaders.IF_MATCH, "\"0\""))
+                .andExpect(status().isPreconditionFailed());
+        mockMvc.perform(delete(uri).header(HttpHeaders.IF_MATCH, "\"1\""))
+                .andExpect(status().isNoContent());
+        mockMvc.perform(delete(uri))
+                .andExpect(status().isNotFound());
+        mockMvc.perform(put(uri).header(HttpHeaders.IF_MATCH, "\"1\"")
+                .contentType(MediaType.APPLICATION_JSON).content(renamed))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    @DisplayName("CW05 - An author edit changes the ETag of the author's articles")
+    public void test05(@Autowired MockMvc mockMvc) throws Exception {
+        String response = mockMvc.perform(post("/api/authors")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(mapper.writeValueAsString(
+                        new Author(0L, "Grace", "Hopper", "grace@example.com"))))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString();
+        Author author = mapper.readValue(response, Author.class);
+        response = mockMvc.perform(post(RESOURCE_URI)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(mapper.writeValueAsString(
+                        new BlogPost(0L, author, "cw05", null, "title", "content"))))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString();
+        long id = mapper.readValue(response, BlogPost.class).getId();
+        String current = mockMvc.perform(put(RESOURCE_URI + "/" + id)
+                .header(HttpHeaders.IF_MATCH, eTag(mockMvc, id))
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(mapper.writeValueAsString(
+                        new BlogPost(id, author, "cw05", null, "edited", "content"))))
+                .andExpect(status().isNoContent())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        mockMvc.perform(put("/api/authors/" + author.getId())
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(mapper.writeValueAsString(new Author(
+                        author.getId(), "Grace", "Murray Hopper", "grace@example.com"))))
+                .andExpect(status().isNoContent());
+
+        perform(mockMvc, get(RESOURCE_URI + "/" + id)
+                .header(HttpHeaders.IF_NONE_MATCH, current))
+                .andExpect(status().isOk());
+        mockMvc.perform(put(RESOURCE_URI + "/" + id)
+                .header(HttpHeaders.IF_MATCH, current)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(mapper.writeValueAsString(
+                        new BlogPost(id, author, "cw05", null, "lost update", "content"))))
+                .andExpect(status().isPreconditionFailed());
+    }
+
+    @Test
+    @DisplayName("CW06 - Cached articles show their author's edits")
+    public void test06(@Autowired MockMvc mockMvc) throws Exception {
+        String response = mockMvc.perform(post("/api/authors")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(mapper.writeValueAsString(
+                        new Author(0L, "Ada", "Lovelace", "ada@example.com"))))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString();
+        Author author = mapper.readValue(response, Author.class);
+        response = mockMvc.perform(post(RESOURCE_URI)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(mapper.writeValueAsString(
+                        new BlogPost(0L, author, "cw06", null, "title", "content"))))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString();
+        String uri = RESOURCE_URI + "/" + mapper.readValue(response, BlogPost.class).getId();
+        perform(mockMvc, get(uri))
+                .andExpect(jsonPath("$.[0].author.firstName").value("Ada"));
+
+        mockMvc.perform(put("/api/authors/" + author.getId())
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(mapper.writeValueAsString(new Author(
+                        author.getId(), "Augusta", "Lovelace", "ada@example.com"))))
+                .andExpect(status().isNoContent());
+        perform(mockMvc, get(uri))
+                .andExpect(jsonPath("$.[0].author.firstName").value("Augusta"));
+    }
+
+    @Test
+    @DisplayName("CW07 - Moving a post's date within its category updates the category")
+    public void test07(@Autowired MockMvc mockMvc, @Autowired JdbcTemplate jdbcTemplate)
+            throws Exception {
+        long id = createPosting(mockMvc, "cw07");
+        Date[] dates = {new Date(4102444800000L), new Date(0L)};
+        for (int i = 0; i < dates.length; i++) {
+            mockMvc.perform(put(RESOURCE_URI + "/" + id)
+                    .header(HttpHeaders.IF_MATCH, "\"" + i + "\"")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(mapper.writeValueAsString(
+                            new BlogPost(id, null, "cw07", dates[i], "title", "content"))))
+                    .andExpect(status().isNoContent())
+                    .andExpect(header().string(HttpHeaders.ETAG, "\"" + (i + 1) + "\""));
+            assertEquals(dates[i].getTime(), jdbcTemplate.queryForObject(
+                    "select latest_date_posted from category where category_name = ?",
+                    Timestamp.class, "cw07").getTime());
+        }
+    }
+}
@@ -0,0 +1,347 @@
+package com.spankinfresh.blog.api;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.spankinfresh.blog.data.BlogPostJdbcTemplateRepository;
+import com.spankinfresh.blog.domain.BlogPost;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.context.ApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.StreamUtils;
+import org.springframework.web.util.NestedServletException;
+
+import java.io.ByteArrayInputStream;
+import java.net.URI;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+
+import static com.spankinfresh.blog.api.AsyncRequests.awaitSnapshots;
+import static com.spankinfresh.blog.api.AsyncRequests.perform;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = "spring.datasource.generate-unique-name=true")
+@AutoConfigureMockMvc
+public class ContentControllerTests {
+    private static final String RESOURCE_URI = "/api/articles";
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @SpyBean
+    private BlogPostJdbcTemplateRepository blogPostJdbcTemplateRepository;
+
+    @BeforeEach
+    public void deleteAllPostings(@Autowired ApplicationContext context) throws Exception {
+        TestArticles.deleteAll(context);
+    }
+
+    private long createPosting(MockMvc mockMvc, String category) throws Exception {
+        return createPosting(mockMvc, category, "title", "content");
+    }
+
+    private long createPosting(MockMvc mockMvc, String category,
+                               String title, String content) throws Exception {
+        String response = mockMvc.perform(post(RESOURCE_URI)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(mapper.writeValueAsString(
+                        new BlogPost(0L, null, category, null, title, content))))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString();
+        return mapper.readValue(response, BlogPost.class).getId();
+    }
+
+    @Test
+    @DisplayName("CC01 - Categories carry post counts maintained by the write paths")
+    public void test01(@Autowired MockMvc mockMvc,
+                       @Autowired SummarySnapshots summarySnapshots) throws Exception {
+        createPosting(mockMvc, "java");
+        long movedId = createPosting(mockMvc, "java");
+        long deletedId = createPosting(mockMvc, "spring");
+        awaitSnapshots(summarySnapshots);
+        mockMvc.perform(get("/api/categories"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$.[0].categoryName").value("java"))
+                .andExpect(jsonPath("$.[0].postCount").value(2))
+                .andExpect(jsonPath("$.[0].latestDatePosted").isNotEmpty())
+                .andExpect(jsonPath("$.[1].categoryName").value("spring"))
+                .andExpect(jsonPath("$.[1].postCount").value(1));
+
+        mockMvc.perform(put(RESOURCE_URI + "/" + movedId)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(mapper.writeValueAsString(
+                        new BlogPost(movedId, null, "kotlin", null, "title", "content"))))
+                .andExpect(status().isNoContent());
+        mockMvc.perform(delete(RESOURCE_URI + "/" + deletedId))
+                .andExpect(status().isNoContent());
+        awaitSnapshots(summarySnapshots);
+        mockMvc.perform(get("/api/categories"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$.[0].categoryName").value("java"))
+                .andExpect(jsonPath("$.[0].postCount").value(1))
+                .andExpect(jsonPath("$.[1].categoryName").value("kotlin"))
+                .andExpect(jsonPath("$.[1].postCount").value(1));
+    }
+
+    @Test
+    @DisplayName("CC02 - Category IDs are stable across writes")
+    public void test02(@Autowired MockMvc mockMvc,
+                       @Autowired SummarySnapshots summarySnapshots) throws Exception {
+        createPosting(mockMvc, "zebra");
+        awaitSnapshots(summarySnapshots);
+        String firstId = mockMvc.perform(get("/api/categories"))
+                .andReturn().getResponse().getContentAsString();
+        createPosting(mockMvc, "aardvark");
+        awaitSnapshots(summarySnapshots);
+        mockMvc.perform(get("/api/categories"))
+                .andExpect(jsonPath("$.[0].categoryName").value("aardvark"))
+                .andExpect(jsonPath("$.[1].categoryName").value("zebra"))
+                .andExpect(jsonPath("$.[1].id").value(
+                        mapper.readTree(firstId).get(0).get("id").asLong()));
+    }
+
+    @Test
+    @DisplayName("CC03 - Category summaries are paged with a next link")
+    public void test03(@Autowired MockMvc mockMvc) throws Exception {
+        long first = createPosting(mockMvc, "java");
+        createPosting(mockMvc, "other");
+        long second = createPosting(mockMvc, "java");
+        long third = createPosting(mockMvc, "java");
+        MvcResult result = mockMvc.perform(
+                get("/api/summary/articles/category?categoryName=java&limit=2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$.[0].id").value(third))
+                .andExpect(jsonPath("$.[1].id").value(second))
+                .andExpect(jsonPath("$.[0].content").value(nullValue()))
+                .andReturn();
+        String link = result.getResponse().getHeader("Link");
+        String next = link.substring(link.indexOf('<') + 1, link.indexOf('>'));
+        mockMvc.perform(get(URI.create(next)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$.[0].id").value(first))
+                .andExpect(header().doesNotExist("Link"));
+        perform(mockMvc, get(RESOURCE_URI + "/category?categoryName=java&limit=2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$.[0].content").value("content"))
+                .andExpect(header().exists("Link"));
+    }
+
+    @Test
+    @DisplayName("CC04 - Batch POST creates valid items and reports rejected ones")
+    public void test04(@Autowired MockMvc mockMvc,
+                       @Autowired SummarySnapshots summarySnapshots) throws Exception {
+        List<BlogPost> batch = Arrays.asList(
+                new BlogPost(0L, null, "java", null, "one", "content"),
+                new BlogPost(0L, null, "java", null, "", "content"),
+                new BlogPost(0L, null, "spring", null, "three", "content"));
+        mockMvc.perform(post(RESOURCE_URI + "/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(mapper.writeValueAsString(batch)))
+                .andExpect(status().isMultiStatus())
+                .andExpect(jsonPath("$.length()").value(3))
+                .andExpect(jsonPath("$.[0].status").value(201))
+                .andExpect(jsonPath("$.[0].id").isNumber())
+                .andExpect(jsonPath("$.[1].status").value(400))
+                .andExpect(jsonPath("$.[1].fieldErrors.title").value(
+                        "Please enter a title up to 200 characters in length"))
+                .andExpect(jsonPath("$.[2].status").value(201));
+        awaitSnapshots(summarySnapshots);
+        mockMvc.perform(get("/api/categories"))
+                .andExpect(jsonPath("$.[0].categoryName").value("java"))
+                .andExpect(jsonPath("$.[0].postCount").value(1))
+                .andExpect(jsonPath("$.[1].postCount").value(1));
+        mockMvc.perform(get("/api/summary/articles"))
+                .andExpect(jsonPath("$.length()").value(2));
+    }
+
+    @Test
+    @DisplayName("CC05 - Batch POST with no valid items returns bad request")
+    public void test05(@Autowired MockMvc mockMvc) throws Exception {
+        mockMvc.perform(post(RESOURCE_URI + "/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(mapper.writeValueAsString(
+                        Collections.singletonList(new BlogPost()))))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.[0].fieldErrors.content").value("must not be null"));
+        mockMvc.perform(get("/api/summary/articles"))
+                .andExpect(jsonPath("$.length()").value(0));
+    }
+
+    @Test
+    @DisplayName("CC06 - Search ranks matches and follows updates and deletes")
+    public void test06(@Autowired MockMvc mockMvc) throws Exception {
+        long titleMatch = createPosting(mockMvc, "java",
+                "Streams in Java", "A look at collectors.");
+        long contentMatch = createPosting(mockMvc, "java",
+                "Collections", "Java streams are lazy.");
+        long unrelated = createPosting(mockMvc, "misc",
+                "Gardening", "Tomatoes need sun.");
+        perform(mockMvc, get(RESOURCE_URI + "/search?q=STREAMS"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(BlogPostController.TOTAL_COUNT_HEADER, "2"))
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$.[0].id").value(titleMatch))
+                .andExpect(jsonPath("$.[1].id").value(contentMatch));
+        perform(mockMvc, get(RESOURCE_URI + "/search?q=streams&limit=1&offset=1"))
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$.[0].id").value(contentMatch));
+
+        mockMvc.perform(put(RESOURCE_URI + "/" + unrelated)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(mapper.writeValueAsString(new BlogPost(unrelated, null,
+                        "misc", null, "Gardening", "Streams of water."))))
+                .andExpect(status().isNoContent());
+        mockMvc.perform(delete(RESOURCE_URI + "/" + titleMatch))
+                .andExpect(status().isNoContent());
+        perform(mockMvc, get(RESOURCE_URI + "/search?q=streams"))
+                .andExpect(header().string(BlogPostController.TOTAL_COUNT_HEADER, "2"))
+                .andExpect(jsonPath("$.[*].id").value(
+                        containsInAnyOrder((int) contentMatch, (int) unrelated)));
+        perform(mockMvc, get(RESOURCE_URI + "/search").param("q", " "))
+                .andExpect(status().isBadRequest());
+        perform(mockMvc, get(RESOURCE_URI + "/search?q=streams")
+                .param("offset", String.valueOf(Integer.MAX_VALUE)))
+                .andExpect(status().isOk())
+                .andExpect(header().string(BlogPostController.TOTAL_COUNT_HEADER, "2"))
+                .andExpect(jsonPath("$.length()").value(0));
+    }
+
+    @Test
+    @DisplayName("CC07 - Summaries and categories come from snapshots with a gzip copy")
+    public void test07(@Autowired MockMvc mockMvc,
+                       @Autowired SummarySnapshots summarySnapshots) throws Exception {
+        createPosting(mockMvc, "java");
+        awaitSnapshots(summarySnapshots);
+        for (String uri : new String[]{"/api/summary/articles", "/api/categories"}) {
+            MockHttpServletResponse identity = mockMvc.perform(get(uri))
+                    .andExpect(status().isOk())
+                    .andExpect(header().doesNotExist(HttpHeaders.CONTENT_ENCODING))
+                    .andExpect(jsonPath("$.length()").value(1))
+                    .andReturn().getResponse();
+            MockHttpServletResponse gzipped = mockMvc.perform(get(uri)
+                    .header(HttpHeaders.ACCEPT_ENCODING, "gzip, deflate"))
+                    .andExpect(status().isOk())
+                    .andExpect(header().string(HttpHeaders.CONTENT_ENCODING, "gzip"))
+                    .andReturn().getResponse();
+            try (GZIPInputStream in = new GZIPInputStream(
+                    new ByteArrayInputStream(gzipped.getContentAsByteArray()))) {
+                assertArrayEquals(identity.getContentAsByteArray(),
+                        StreamUtils.copyToByteArray(in));
+            }
+            assertTrue(gzipped.getHeaders(HttpHeaders.VARY).contains(HttpHeaders.ACCEPT_ENCODING));
+            assertNotEquals(identity.getHeader(HttpHeaders.ETAG),
+                    gzipped.getHeader(HttpHeaders.ETAG));
+            mockMvc.perform(get(uri)
+                    .header(HttpHeaders.ACCEPT_ENCODING, "gzip")
+                    .header(HttpHeaders.IF_NONE_MATCH, gzipped.getHeader(HttpHeaders.ETAG)))
+                    .andExpect(status().isNotModified());
+        }
+
+        // The same bytes are served until a write replaces them
+        byte[] before = mockMvc.perform(get("/api/categories"))
+                .andReturn().getResponse().getContentAsByteArray();
+        createPosting(mockMvc, "spring");
+        awaitSnapshots(summarySnapshots);
+        mockMvc.perform(get("/api/categories"))
+                .andExpect(jsonPath("$.length()").value(2));
+        mockMvc.perform(get("/api/summary/articles"))
+                .andExpect(jsonPath("$.length()").value(2));
+        assertEquals(1, mapper.readTree(before).size());
+    }
+
+    @Test
+    @DisplayName("CC08 - A post is not stored when its category count cannot be")
+    public void test08(@Autowired MockMvc mockMvc) throws Exception {
+        doThrow(new QueryTimeoutException("category row locked"))
+                .when(blogPostJdbcTemplateRepository).recordPostAdded(eq("java"), any(Date.class));
+        assertThrows(NestedServletException.class, () -> createPosting(mockMvc, "java"));
+        mockMvc.perform(get("/api/summary/articles").accept(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$.length()").value(0));
+    }
+
+    @Test
+    @DisplayName("CC09 - A null batch item is rejected at its index")
+    public void test09(@Autowired MockMvc mockMvc) throws Exception {
+        mockMvc.perform(post(RESOURCE_URI + "/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("[" + mapper.writeValueAsString(
+                        new BlogPost(0L, null, "java", null, "one", "content")) + ", null]"))
+                .andExpect(status().isMultiStatus())
+                .andExpect(jsonPath("$.[0].status").value(201))
+                .andExpect(jsonPath("$.[1].status").value(400))
+                .andExpect(jsonPath("$.[1].index").value(1));
+    }
+
+    @Test
+    @DisplayName("CC10 - A batch over the cap is refused as a whole")
+    public void test10(@Autowired MockMvc mockMvc) throws Exception {
+        String item = mapper.writeValueAsString(
+                new BlogPost(0L, null, "java", null, "title", "content"));
+        mockMvc.perform(post(RESOURCE_URI + "/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("[" + String.join(",",
+                        Collections.nCopies(ArticleBatch.MAX_SIZE + 1, item)) + "]"))
+                .andExpect(status().isPayloadTooLarge());
+        mockMvc.perform(get("/api/summary/articles"))
+                .andExpect(jsonPath("$.length()").value(0));
+    }
+
+    @Test
+    @DisplayName("CC11 - Concurrent first posts of a new category are both counted")
+    public void test11(@Autowired PlatformTransactionManager transactionManager,
+                       @Autowired JdbcTemplate jdbcTemplate) throws Exception {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        for (int round = 0; round < 50; round++) {
+            String category = "new-" + round;
+            CyclicBarrier barrier = new CyclicBarrier(2);
+            // Both transactions are open before either adds to the category
+            Runnable write = () -> transactionTemplate.executeWithoutResult(status -> {
+                try {
+                    barrier.await(5, TimeUnit.SECONDS);
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+                blogPostJdbcTemplateRepository.recordPostsAdded(category, 1, new Date());
+            });
+            CompletableFuture.allOf(CompletableFuture.runAsync(write),
+                    CompletableFuture.runAsync(write)).get(10, TimeUnit.SECONDS);
+            assertEquals(2, jdbcTemplate.queryForObject(
+                    "select post_count from category where category_name = ?",
+                    Long.class, category));
+        }
+    }
+}
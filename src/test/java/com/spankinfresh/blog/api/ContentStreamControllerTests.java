@@ -0,0 +1,144 @@
+package com.spankinfresh.blog.api;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.spankinfresh.blog.data.BlogPostJdbcTemplateRepository;
+import com.spankinfresh.blog.data.PageCursor;
+import com.spankinfresh.blog.domain.BlogPost;
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationContext;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static com.spankinfresh.blog.api.AsyncRequests.awaitSnapshots;
+import static com.spankinfresh.blog.api.AsyncRequests.perform;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = "spring.datasource.generate-unique-name=true")
+@AutoConfigureMockMvc
+public class ContentStreamControllerTests {
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @BeforeEach
+    public void deleteAllPostings(@Autowired ApplicationContext context) throws Exception {
+        TestArticles.deleteAll(context);
+    }
+
+    private BlogPost createPosting(MockMvc mockMvc, String category) throws Exception {
+        String response = mockMvc.perform(post("/api/articles")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(mapper.writeValueAsString(
+                        new BlogPost(0L, null, category, null, "title", "content"))))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString();
+        return mapper.readValue(response, BlogPost.class);
+    }
+
+    private List<JsonNode> streamLines(MockMvc mockMvc, String uri) throws Exception {
+        String body = perform(mockMvc, get(uri).accept(MediaType.APPLICATION_STREAM_JSON))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_STREAM_JSON))
+                .andReturn().getResponse().getContentAsString();
+        List<JsonNode> lines = new ArrayList<>();
+        for (String line : body.split("\n")) {
+            if (!line.isEmpty()) {
+                lines.add(mapper.readTree(line));
+            }
+        }
+        return lines;
+    }
+
+    @Test
+    @DisplayName("CS01 - Summaries stream one JSON object per line, newest first")
+    public void test01(@Autowired MockMvc mockMvc) throws Exception {
+        long first = createPosting(mockMvc, "java").getId();
+        long second = createPosting(mockMvc, "spring").getId();
+        List<JsonNode> lines = streamLines(mockMvc, "/api/summary/articles");
+        assertEquals(2, lines.size());
+        assertEquals(second, lines.get(0).get("id").asLong());
+        assertEquals(first, lines.get(1).get("id").asLong());
+        assertEquals("spring", lines.get(0).get("category").asText());
+        assertEquals(true, lines.get(0).get("content").isNull());
+    }
+
+    @Test
+    @DisplayName("CS02 - Summary streams honour limit and cursor")
+    public void test02(@Autowired MockMvc mockMvc) throws Exception {
+        long first = createPosting(mockMvc, "java").getId();
+        BlogPost second = createPosting(mockMvc, "java");
+        createPosting(mockMvc, "java");
+        List<JsonNode> lines = streamLines(mockMvc, "/api/summary/articles?limit=1&cursor="
+                + PageCursor.after(second).encode());
+        assertEquals(1, lines.size());
+        assertEquals(first, lines.get(0).get("id").asLong());
+        assertEquals(2, streamLines(mockMvc, "/api/summary/articles?limit=2").size());
+        mockMvc.perform(get("/api/summary/articles?cursor=bogus")
+                .accept(MediaType.APPLICATION_STREAM_JSON))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @DisplayName("CS03 - Categories stream as lines; plain JSON requests still get an array")
+    public void test03(@Autowired MockMvc mockMvc,
+                       @Autowired SummarySnapshots summarySnapshots) throws Exception {
+        createPosting(mockMvc, "java");
+        createPosting(mockMvc, "java");
+        createPosting(mockMvc, "spring");
+        List<JsonNode> lines = streamLines(mockMvc, "/api/categories");
+        assertEquals(2, lines.size());
+        assertEquals("java", lines.get(0).get("categoryName").asText());
+        assertEquals(2, lines.get(0).get("postCount").asLong());
+        assertEquals("spring", lines.get(1).get("categoryName").asText());
+        awaitSnapshots(summarySnapshots);
+        mockMvc.perform(get("/api/categories").accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2));
+        mockMvc.perform(get("/api/summary/articles").accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(3));
+    }
+
+    @Test
+    @DisplayName("CS04 - Cancelling a summary flux returns its connection to the pool")
+    public void test04(@Autowired MockMvc mockMvc,
+                       @Autowired BlogPostJdbcTemplateRepository repository,
+                       @Autowired DataSource dataSource) throws Exception {
+        for (int i = 0; i < 5; i++) {
+            createPosting(mockMvc, "java");
+        }
+        BlogPost newest = repository.fluxBlogPostingsOmittingContent(null, Integer.MAX_VALUE)
+                .take(1).blockLast();
+        assertEquals("java", newest.getCategory());
+        assertEquals(0, ((HikariDataSource) dataSource).getHikariPoolMXBean().getActiveConnections());
+    }
+
+    @Test
+    @DisplayName("CS05 - A summary stream limit is capped like the paged listings")
+    public void test05(@Autowired MockMvc mockMvc) throws Exception {
+        mockMvc.perform(post("/api/articles/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(mapper.writeValueAsString(Collections.nCopies(KeysetPage.MAX_LIMIT + 1,
+                        new BlogPost(0L, null, "java", null, "title", "content")))))
+                .andExpect(status().isCreated());
+        assertEquals(KeysetPage.MAX_LIMIT,
+                streamLines(mockMvc, "/api/summary/articles?limit=1000").size());
+        assertEquals(KeysetPage.MAX_LIMIT + 1,
+                streamLines(mockMvc, "/api/summary/articles").size());
+    }
+}
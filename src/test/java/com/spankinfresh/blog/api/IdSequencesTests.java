@@ -0,0 +1,45 @@
+package com.spankinfresh.blog.api;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.spankinfresh.blog.domain.Author;
+import com.spankinfresh.blog.domain.BlogPost;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// The rows are inserted once the schema exists and before the application is
+// ready, as they would be found in a database from before the sequences
+@SpringBootTest(properties = {"spring.datasource.generate-unique-name=true",
+        "spring.datasource.data=classpath:legacy-ids.sql"})
+@AutoConfigureMockMvc
+public class IdSequencesTests {
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @Test
+    @DisplayName("IS01 - New authors, posts and bodies get ids past the stored ones")
+    public void test01(@Autowired MockMvc mockMvc) throws Exception {
+        String author = mockMvc.perform(post("/api/authors")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(mapper.writeValueAsString(
+                        new Author(0L, "Grace", "Hopper", "is01@example.com"))))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString();
+        assertTrue(mapper.readValue(author, Author.class).getId() > 1000);
+
+        String article = mockMvc.perform(post("/api/articles")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(mapper.writeValueAsString(
+                        new BlogPost(0L, null, "is01", null, "title", "content"))))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString();
+        assertTrue(mapper.readValue(article, BlogPost.class).getId() > 1000);
+    }
+}
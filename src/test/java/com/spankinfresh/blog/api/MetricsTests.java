@@ -0,0 +1,84 @@
+package com.spankinfresh.blog.api;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.spankinfresh.blog.domain.BlogPost;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static com.spankinfresh.blog.api.AsyncRequests.awaitSnapshots;
+import static com.spankinfresh.blog.api.AsyncRequests.perform;
+import static org.hamcrest.Matchers.containsString;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = "spring.datasource.generate-unique-name=true")
+@AutoConfigureMockMvc
+public class MetricsTests {
+    private static final String RESOURCE_URI = "/api/articles";
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @Test
+    @DisplayName("M01 - Endpoint, repository, payload and pool metrics are scraped with histograms")
+    public void test01(@Autowired MockMvc mockMvc,
+                       @Autowired SummarySnapshots summarySnapshots) throws Exception {
+        mockMvc.perform(post(RESOURCE_URI)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(mapper.writeValueAsString(
+                        new BlogPost(0L, null, "metrics", null, "title", "content"))))
+                .andExpect(status().isCreated());
+        perform(mockMvc, get(RESOURCE_URI + "/category?categoryName=metrics"))
+                .andExpect(status().isOk());
+        awaitSnapshots(summarySnapshots);
+        mockMvc.perform(get("/api/categories"))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get("/actuator/prometheus"))
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString(
+                        "http_server_requests_seconds_bucket{exception=\"None\",method=\"GET\"," +
+                                "outcome=\"SUCCESS\",status=\"200\",uri=\"/api/articles/category\"")))
+                .andExpect(content().string(containsString(
+                        "blog_repository_invocations_seconds_bucket{exception=\"none\"," +
+                                "method=\"findWithBodiesByCategoryOrderByDatePostedDesc\"," +
+                                "repository=\"blogPostRepository\"")))
+                // Called per snapshot rebuild rather than per request
+                .andExpect(content().string(containsString(
+                        "blog_repository_invocations_seconds_bucket{exception=\"none\"," +
+                                "method=\"getCategoryList\"," +
+                                "repository=\"blogPostJdbcTemplateRepository\"")))
+                .andExpect(content().string(containsString(
+                        "blog_article_content_length_characters_sum{operation=\"create\",} 7.0")))
+                .andExpect(content().string(containsString(
+                        "blog_article_content_length_characters_bucket{operation=\"create\"")))
+                .andExpect(content().string(containsString("hikaricp_connections_active")));
+    }
+
+    @Test
+    @DisplayName("M02 - Content downloads are sized by encoding")
+    public void test02(@Autowired MockMvc mockMvc) throws Exception {
+        String response = mockMvc.perform(post(RESOURCE_URI)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(mapper.writeValueAsString(
+                        new BlogPost(0L, null, "metrics", null, "title", "twelve bytes"))))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString();
+        long id = mapper.readValue(response, BlogPost.class).getId();
+        perform(mockMvc, get(RESOURCE_URI + "/" + id + "/content"))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get("/actuator/metrics/" + BlogPostController.CONTENT_DOWNLOAD_METRIC)
+                .param("tag", "encoding:identity"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.baseUnit").value("bytes"))
+                .andExpect(jsonPath("$.measurements[?(@.statistic == 'TOTAL')].value")
+                        .value(12.0));
+    }
+}
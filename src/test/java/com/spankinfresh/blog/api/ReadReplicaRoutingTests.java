@@ -0,0 +1,185 @@
+package com.spankinfresh.blog.api;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.spankinfresh.blog.data.AuthorRepository;
+import com.spankinfresh.blog.data.BlogPostRepository;
+import com.spankinfresh.blog.data.ReadWriteRoutingDataSource;
+import com.spankinfresh.blog.domain.Author;
+import com.spankinfresh.blog.domain.BlogPost;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import javax.servlet.http.Cookie;
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+import java.util.Date;
+
+import static com.spankinfresh.blog.api.AsyncRequests.awaitSnapshots;
+import static com.spankinfresh.blog.api.AsyncRequests.perform;
+import static org.hamcrest.Matchers.containsString;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Two in-memory H2 databases stand in for the primary and a replica. There
+ * is no replication between them: {@link #replicate} copies the primary
+ * over, so until it runs the replica lags behind every write.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=" + ReadReplicaRoutingTests.PRIMARY_URL,
+        "blog.datasource.replicas[0].url=" + ReadReplicaRoutingTests.REPLICA_URL})
+@AutoConfigureMockMvc
+public class ReadReplicaRoutingTests {
+    static final String PRIMARY_URL = "jdbc:h2:mem:routing-primary;DB_CLOSE_DELAY=-1";
+    static final String REPLICA_URL = "jdbc:h2:mem:routing-replica;DB_CLOSE_DELAY=-1";
+    private static final String RESOURCE_URI = "/api/articles";
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @BeforeEach
+    public void replicate() throws Exception {
+        File snapshot = new File("target/routing-primary.sql");
+        try (Connection primary = DriverManager.getConnection(PRIMARY_URL, "sa", "");
+             Statement statement = primary.createStatement()) {
+            statement.execute("script to '" + snapshot.getAbsolutePath() + "'");
+        }
+        try (Connection replica = DriverManager.getConnection(REPLICA_URL);
+             Statement statement = replica.createStatement()) {
+            statement.execute("drop all objects");
+            statement.execute("runscript from '" + snapshot.getAbsolutePath() + "'");
+        }
+    }
+
+    private MvcResult createPosting(MockMvc mockMvc, String category) throws Exception {
+        return mockMvc.perform(post(RESOURCE_URI)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(mapper.writeValueAsString(
+                        new BlogPost(0L, null, category, null, "title", "content"))))
+                .andExpect(status().isCreated())
+                .andReturn();
+    }
+
+    private long id(MvcResult created) throws Exception {
+        return mapper.readValue(created.getResponse().getContentAsString(), BlogPost.class).getId();
+    }
+
+    private double routedTo(MeterRegistry meterRegistry, String pool) {
+        return meterRegistry.get(ReadWriteRoutingDataSource.METRIC_NAME)
+                .tag("pool", pool).counter().count();
+    }
+
+    @Test
+    @DisplayName("RR01 - Reads are served by the replica, writes by the primary")
+    public void test01(@Autowired MockMvc mockMvc,
+                       @Autowired MeterRegistry meterRegistry) throws Exception {
+        double replicaBefore = routedTo(meterRegistry, "replica-1");
+        createPosting(mockMvc, "rr01");
+        perform(mockMvc, get(RESOURCE_URI + "/category?categoryName=rr01"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(0));
+        mockMvc.perform(get("/api/summary/articles/category?categoryName=rr01"))
+                .andExpect(jsonPath("$.length()").value(0));
+        assertTrue(routedTo(meterRegistry, "replica-1") >= replicaBefore + 2);
+
+        replicate();
+        perform(mockMvc, get(RESOURCE_URI + "/category?categoryName=rr01"))
+                .andExpect(jsonPath("$.length()").value(1));
+        mockMvc.perform(get("/api/summary/articles/category?categoryName=rr01"))
+                .andExpect(jsonPath("$.length()").value(1));
+    }
+
+    @Test
+    @DisplayName("RR02 - After a write the same client reads from the primary")
+    public void test02(@Autowired MockMvc mockMvc) throws Exception {
+        MvcResult created = createPosting(mockMvc, "rr02");
+        Cookie pinned = created.getResponse().getCookie(ReadYourWritesFilter.COOKIE_NAME);
+        assertNotNull(pinned);
+        perform(mockMvc, get(RESOURCE_URI + "/category?categoryName=rr02").cookie(pinned))
+                .andExpect(jsonPath("$.length()").value(1));
+        mockMvc.perform(get("/api/summary/articles/category?categoryName=rr02").cookie(pinned))
+                .andExpect(jsonPath("$.length()").value(1));
+        perform(mockMvc, get("/api/summary/articles?limit=1")
+                .accept(MediaType.APPLICATION_STREAM_JSON).cookie(pinned))
+                .andExpect(content().string(containsString("\"category\":\"rr02\"")));
+
+        // The lookup a write makes first goes to the primary as well
+        long id = id(created);
+        mockMvc.perform(put(RESOURCE_URI + "/" + id)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(mapper.writeValueAsString(
+                        new BlogPost(id, null, "rr02", null, "new title", "content"))))
+                .andExpect(status().isNoContent());
+    }
+
+    @Test
+    @DisplayName("RR03 - An expired read-your-writes cookie reads from the replica again")
+    public void test03(@Autowired MockMvc mockMvc) throws Exception {
+        createPosting(mockMvc, "rr03");
+        Cookie expired = new Cookie(ReadYourWritesFilter.COOKIE_NAME,
+                String.valueOf(System.currentTimeMillis() - 1));
+        perform(mockMvc, get(RESOURCE_URI + "/category?categoryName=rr03").cookie(expired))
+                .andExpect(jsonPath("$.length()").value(0));
+    }
+
+    @Test
+    @DisplayName("RR04 - Cache fills read from the primary")
+    public void test04(@Autowired MockMvc mockMvc,
+                       @Autowired SummarySnapshots summarySnapshots) throws Exception {
+        long id = id(createPosting(mockMvc, "rr04"));
+        perform(mockMvc, get(RESOURCE_URI + "/" + id))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.[0].category").value("rr04"));
+        awaitSnapshots(summarySnapshots);
+        mockMvc.perform(get("/api/categories"))
+                .andExpect(jsonPath("$[?(@.categoryName == 'rr04')].postCount").value(1));
+        // Authors are read through the second-level cache
+        mockMvc.perform(post("/api/authors")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(mapper.writeValueAsString(
+                        new Author(0L, "Ada", "Lovelace", "ada@example.com"))))
+                .andExpect(status().isCreated());
+        mockMvc.perform(get("/api/authors"))
+                .andExpect(jsonPath("$[?(@.emailAddress == 'ada@example.com')]").isNotEmpty());
+        // Listings still come from the lagging replica
+        mockMvc.perform(get("/api/summary/articles/category?categoryName=rr04"))
+                .andExpect(jsonPath("$.length()").value(0));
+    }
+
+    @Test
+    @DisplayName("RR05 - Replica reads do not put stale authors in the second-level cache")
+    public void test05(@Autowired MockMvc mockMvc,
+                       @Autowired AuthorRepository authorRepository,
+                       @Autowired BlogPostRepository blogPostRepository) throws Exception {
+        Author author = authorRepository.save(
+                new Author(0L, "Grace", "Hopper", "grace@example.com"));
+        blogPostRepository.save(new BlogPost(0L, author, "rr05", new Date(), "title", "content"));
+        replicate();
+
+        long id = author.getId();
+        mockMvc.perform(put("/api/authors/" + id)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(mapper.writeValueAsString(
+                        new Author(id, "Admiral", "Hopper", "grace@example.com"))))
+                .andExpect(status().isNoContent());
+        // The replica has not seen the rename yet and loads the old row
+        perform(mockMvc, get(RESOURCE_URI + "/category?categoryName=rr05"))
+                .andExpect(jsonPath("$.[0].author.firstName").value("Grace"));
+        mockMvc.perform(get("/api/authors/" + id))
+                .andExpect(jsonPath("$.[0].firstName").value("Admiral"));
+    }
+}
@@ -0,0 +1,150 @@
+package com.spankinfresh.blog.api;
+
+import com.spankinfresh.blog.data.BlogPostRepository;
+import com.spankinfresh.blog.domain.BlogPost;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockAsyncContext;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static com.spankinfresh.blog.api.AsyncRequests.perform;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = {
+        "spring.datasource.generate-unique-name=true",
+        "blog.async.enabled=true",
+        "blog.async.listing.threads=1",
+        "blog.async.listing.queue-capacity=0"})
+@AutoConfigureMockMvc
+public class RouteBulkheadTests {
+    private static final String RESOURCE_URI = "/api/articles";
+
+    @MockBean
+    private BlogPostRepository mockRepository;
+
+    private final CountDownLatch listingStarted = new CountDownLatch(1);
+    private final CountDownLatch releaseListing = new CountDownLatch(1);
+
+    private MvcResult startBlockedListing(MockMvc mockMvc) throws Exception {
+        when(mockRepository.findAllWithBodies()).thenAnswer(invocation -> {
+            listingStarted.countDown();
+            releaseListing.await(10, TimeUnit.SECONDS);
+            return Collections.emptyList();
+        });
+        MvcResult result = mockMvc.perform(get(RESOURCE_URI))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        assertTrue(listingStarted.await(5, TimeUnit.SECONDS));
+        return result;
+    }
+
+    @Test
+    @DisplayName("B01 - A full listing bulkhead rejects listings but still serves lookups")
+    public void test01(@Autowired MockMvc mockMvc) throws Exception {
+        BlogPost blogPost = new BlogPost(1L, null, "category", null, "title", "content");
+        when(mockRepository.findById(1L)).thenReturn(Optional.of(blogPost));
+        MvcResult blocked = startBlockedListing(mockMvc);
+
+        perform(mockMvc, get(RESOURCE_URI))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string("Retry-After", "1"));
+        perform(mockMvc, get(RESOURCE_URI + "/1"))
+                .andExpect(status().isOk());
+
+        releaseListing.countDown();
+        mockMvc.perform(asyncDispatch(blocked))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    @DisplayName("B02 - A listing that outlives its timeout answers 503")
+    public void test02(@Autowired MockMvc mockMvc,
+                       @Autowired MeterRegistry meterRegistry) throws Exception {
+        double timeoutsBefore = timeouts(meterRegistry);
+        MvcResult blocked = startBlockedListing(mockMvc);
+
+        MockAsyncContext asyncContext = (MockAsyncContext) blocked.getRequest().getAsyncContext();
+        for (AsyncListener listener : asyncContext.getListeners()) {
+            listener.onTimeout(new AsyncEvent(asyncContext));
+        }
+        // MockMvc takes the result from the interrupted worker, so let it finish
+        awaitIdleListings(meterRegistry);
+        mockMvc.perform(asyncDispatch(blocked))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string("Retry-After", "1"));
+        assertEquals(timeoutsBefore + 1, timeouts(meterRegistry));
+        releaseListing.countDown();
+    }
+
+    @Test
+    @DisplayName("B03 - Each route class publishes its concurrency limit")
+    public void test03(@Autowired MeterRegistry meterRegistry) {
+        assertEquals(1.0, meterRegistry.get(RouteBulkheads.METRIC_PREFIX + ".concurrency.limit")
+                .tag("route", "listing").gauge().value());
+        assertEquals(6.0, meterRegistry.get(RouteBulkheads.METRIC_PREFIX + ".concurrency.limit")
+                .tag("route", "lookup").gauge().value());
+        assertEquals(1.0, meterRegistry.get(RouteBulkheads.METRIC_PREFIX + ".capacity")
+                .tag("route", "listing").gauge().value());
+    }
+
+    @Test
+    @DisplayName("B04 - Responses finished on an async dispatch vary on Accept once")
+    public void test04(@Autowired MockMvc mockMvc) throws Exception {
+        BlogPost blogPost = new BlogPost(1L, null, "category", null, "title", "content");
+        when(mockRepository.findById(1L)).thenReturn(Optional.of(blogPost));
+        when(mockRepository.findVersionsById(1L))
+                .thenReturn(Collections.singletonList(new Object[]{0L, null}));
+        when(mockRepository.findByCategoryOrderByDatePostedDesc("category"))
+                .thenReturn(Collections.singletonList(blogPost));
+
+        List<String> vary = perform(mockMvc, get(RESOURCE_URI + "/1"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeaders(HttpHeaders.VARY);
+        assertEquals(1, Collections.frequency(vary, HttpHeaders.ACCEPT));
+        vary = perform(mockMvc, get(RESOURCE_URI + "/1")
+                .header(HttpHeaders.IF_NONE_MATCH, "\"0\""))
+                .andExpect(status().isNotModified())
+                .andReturn().getResponse().getHeaders(HttpHeaders.VARY);
+        assertEquals(1, Collections.frequency(vary, HttpHeaders.ACCEPT));
+        vary = perform(mockMvc, get(RESOURCE_URI + "/category").param("categoryName", "category"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeaders(HttpHeaders.VARY);
+        assertEquals(1, Collections.frequency(vary, HttpHeaders.ACCEPT));
+    }
+
+    private void awaitIdleListings(MeterRegistry meterRegistry) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (meterRegistry.get(RouteBulkheads.METRIC_PREFIX + ".active")
+                .tag("route", "listing").gauge().value() > 0) {
+            assertTrue(System.nanoTime() < deadline);
+            Thread.sleep(10);
+        }
+    }
+
+    private double timeouts(MeterRegistry meterRegistry) {
+        return meterRegistry.get(RouteBulkheads.METRIC_PREFIX + ".timeouts")
+                .tag("route", "listing").counter().count();
+    }
+}
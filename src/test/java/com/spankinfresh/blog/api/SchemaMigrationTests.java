@@ -0,0 +1,30 @@
+package com.spankinfresh.blog.api;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static com.spankinfresh.blog.api.AsyncRequests.perform;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// The legacy tables exist before the application starts and Hibernate only
+// updates the schema, as against a database from an earlier version
+@SpringBootTest(properties = {"spring.datasource.generate-unique-name=true",
+        "spring.jpa.hibernate.ddl-auto=update",
+        "spring.datasource.schema=classpath:legacy-text-content.sql"})
+@AutoConfigureMockMvc
+public class SchemaMigrationTests {
+
+    @Test
+    @DisplayName("SM01 - Content stored as text is readable after the conversion to bytes")
+    public void test01(@Autowired MockMvc mockMvc) throws Exception {
+        perform(mockMvc, get("/api/articles/1000"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.[0].content").value("legacy content"));
+    }
+}
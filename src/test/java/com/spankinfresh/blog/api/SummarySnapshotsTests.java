@@ -0,0 +1,45 @@
+package com.spankinfresh.blog.api;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+@SpringBootTest(properties = {"spring.datasource.generate-unique-name=true",
+        "blog.snapshots.max-age=200ms"})
+@AutoConfigureMockMvc
+public class SummarySnapshotsTests {
+
+    private static boolean listed(MockMvc mockMvc, String title) throws Exception {
+        return mockMvc.perform(get("/api/summary/articles"))
+                .andReturn().getResponse().getContentAsString().contains(title);
+    }
+
+    @Test
+    @DisplayName("SS01 - Changes made outside this instance show up within the max age")
+    public void test01(@Autowired MockMvc mockMvc, @Autowired JdbcTemplate jdbcTemplate)
+            throws Exception {
+        assertFalse(listed(mockMvc, "written elsewhere"));
+        // As another instance would write it, without invalidating the snapshots here
+        jdbcTemplate.update("insert into blog_post_content (id, content) values (1000, X'')");
+        jdbcTemplate.update("insert into blog_post (id, category, date_posted, title, " +
+                "body_id, version, view_count) values (1000, 'elsewhere', current_timestamp, " +
+                "'written elsewhere', 1000, 0, 0)");
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!listed(mockMvc, "written elsewhere")) {
+            if (System.nanoTime() > deadline) {
+                throw new AssertionError("Snapshot not rebuilt within 5 seconds");
+            }
+            Thread.sleep(20);
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.spankinfresh.blog.api;
+
+import com.spankinfresh.blog.data.BlogPostSearchIndex;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.ApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * Empties the article tables and everything held in memory about them, so
+ * tests that count posts or categories can share one application context
+ * instead of rebuilding it for every test.
+ */
+final class TestArticles {
+
+    private TestArticles() {
+    }
+
+    static void deleteAll(ApplicationContext context) throws InterruptedException {
+        JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+        jdbcTemplate.update("delete from blog_post");
+        jdbcTemplate.update("delete from blog_post_content");
+        jdbcTemplate.update("delete from category");
+        CacheManager cacheManager = context.getBean(CacheManager.class);
+        for (String name : cacheManager.getCacheNames()) {
+            cacheManager.getCache(name).clear();
+        }
+        context.getBean(BlogPostSearchIndex.class).rebuild();
+        SummarySnapshots summarySnapshots = context.getBean(SummarySnapshots.class);
+        summarySnapshots.invalidate();
+        AsyncRequests.awaitSnapshots(summarySnapshots);
+    }
+}
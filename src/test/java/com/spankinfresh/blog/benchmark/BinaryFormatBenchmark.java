@@ -0,0 +1,99 @@
+package com.spankinfresh.blog.benchmark;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.spankinfresh.blog.BinaryFormatConfiguration;
+import com.spankinfresh.blog.domain.Author;
+import com.spankinfresh.blog.domain.BlogPost;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encoding and decoding of the two payloads internal consumers fetch most,
+ * in each format the API negotiates: a page of 20 articles as returned by
+ * GET /api/articles, and 500 summaries (no content, no author) as in the
+ * /api/summary/articles snapshot. The mappers are built the way the
+ * application builds them. Payload sizes are printed once per trial.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BinaryFormatBenchmark {
+
+    private static final TypeReference<List<BlogPost>> BLOG_POST_LIST =
+            new TypeReference<List<BlogPost>>() { };
+
+    @Param({"json", "cbor", "smile"})
+    private String format;
+
+    @Param({"articles", "summaries"})
+    private String payload;
+
+    private ObjectMapper objectMapper;
+    private List<BlogPost> blogPosts;
+    private byte[] encoded;
+
+    @Setup(Level.Trial)
+    public void createPayload() throws IOException {
+        objectMapper = objectMapper(format);
+        blogPosts = new ArrayList<>();
+        Author author = new Author(1L, "First", "Last", "author@example.com");
+        boolean articles = payload.equals("articles");
+        for (int i = 0; i < (articles ? 20 : 500); i++) {
+            blogPosts.add(new BlogPost(i + 1, articles ? author : null, "category" + (i % 8),
+                    new Date(1_580_000_000_000L + i * 60_000L), "Title of post number " + i,
+                    articles ? Payloads.text(2000, i) : null));
+        }
+        encoded = objectMapper.writeValueAsBytes(blogPosts);
+        System.out.printf("%n%s %s: %d bytes%n", format, payload, encoded.length);
+    }
+
+    private static ObjectMapper objectMapper(String format) {
+        BinaryFormatConfiguration configuration = new BinaryFormatConfiguration();
+        switch (format) {
+            case "cbor":
+                return configuration.cborHttpMessageConverter(bootBuilder()).getObjectMapper();
+            case "smile":
+                return configuration.smileHttpMessageConverter(bootBuilder()).getObjectMapper();
+            default:
+                return bootBuilder().build();
+        }
+    }
+
+    // Same settings Spring Boot applies to its builder
+    private static Jackson2ObjectMapperBuilder bootBuilder() {
+        return Jackson2ObjectMapperBuilder.json()
+                .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+    }
+
+    @Benchmark
+    public byte[] encode() throws IOException {
+        return objectMapper.writeValueAsBytes(blogPosts);
+    }
+
+    @Benchmark
+    public List<BlogPost> decode() throws IOException {
+        return objectMapper.readValue(encoded, BLOG_POST_LIST);
+    }
+}
@@ -0,0 +1,116 @@
+package com.spankinfresh.blog.benchmark;
+
+import com.spankinfresh.blog.BlogApplication;
+import com.spankinfresh.blog.data.AuthorRepository;
+import com.spankinfresh.blog.data.BlogPostJdbcTemplateRepository;
+import com.spankinfresh.blog.data.BlogPostRepository;
+import com.spankinfresh.blog.domain.Author;
+import com.spankinfresh.blog.domain.BlogPost;
+import com.spankinfresh.blog.domain.Category;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Read paths of the two repositories against an embedded H2 seeded with
+ * {@code posts} articles. Caching is switched off so every call reaches the
+ * database.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DataAccessBenchmark {
+    private static final int AUTHORS = 10;
+    private static final int CATEGORIES = 8;
+
+    @Param({"100", "1000"})
+    private int posts;
+
+    private ConfigurableApplicationContext context;
+    private BlogPostRepository blogPostRepository;
+    private BlogPostJdbcTemplateRepository jdbcRepository;
+    private long firstId;
+
+    @Setup(Level.Trial)
+    public void startApplication() {
+        context = new SpringApplicationBuilder(BlogApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties(
+                        "spring.main.banner-mode=off",
+                        "logging.level.root=warn",
+                        "spring.datasource.generate-unique-name=true",
+                        "spring.cache.type=none")
+                .run();
+        blogPostRepository = context.getBean(BlogPostRepository.class);
+        jdbcRepository = context.getBean(BlogPostJdbcTemplateRepository.class);
+        seed(context.getBean(AuthorRepository.class));
+    }
+
+    private void seed(AuthorRepository authorRepository) {
+        List<Author> authors = new ArrayList<>();
+        for (int i = 0; i < AUTHORS; i++) {
+            authors.add(authorRepository.save(
+                    new Author(0L, "First" + i, "Last" + i, "author" + i + "@example.com")));
+        }
+        List<BlogPost> batch = new ArrayList<>();
+        Date now = new Date();
+        for (int i = 0; i < posts; i++) {
+            batch.add(new BlogPost(0L, authors.get(i % AUTHORS), "category" + (i % CATEGORIES),
+                    new Date(now.getTime() - i * 60_000L), "Title " + i,
+                    Payloads.text(2_000, i)));
+        }
+        firstId = blogPostRepository.saveAll(batch).iterator().next().getId();
+        for (int c = 0; c < CATEGORIES; c++) {
+            int count = posts / CATEGORIES + (c < posts % CATEGORIES ? 1 : 0);
+            jdbcRepository.recordPostsAdded("category" + c, count, now);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void stopApplication() {
+        context.close();
+    }
+
+    @Benchmark
+    public List<BlogPost> summariesOmittingContent() {
+        return jdbcRepository.getAllBlogPostingsOmittingContent();
+    }
+
+    @Benchmark
+    public List<Category> categoryList() {
+        return jdbcRepository.getCategoryList();
+    }
+
+    @Benchmark
+    public Optional<BlogPost> findById() {
+        return blogPostRepository.findById(firstId + ThreadLocalRandom.current().nextInt(posts));
+    }
+
+    @Benchmark
+    public Iterable<BlogPost> findAll() {
+        return blogPostRepository.findAll();
+    }
+}
@@ -0,0 +1,25 @@
+package com.spankinfresh.blog.benchmark;
+
+/**
+ * Deterministic article text for benchmarks, so runs on different
+ * branches serialize and store identical payloads.
+ */
+final class Payloads {
+    private static final String[] WORDS = {
+            "spring", "blog", "article", "content", "category", "author",
+            "cache", "index", "query", "latency", "throughput", "payload"};
+
+    private Payloads() {
+    }
+
+    static String text(int length, int seed) {
+        StringBuilder text = new StringBuilder(length + 16);
+        int i = seed;
+        while (text.length() < length) {
+            text.append(WORDS[Math.floorMod(i * 31 + 7, WORDS.length)]).append(' ');
+            i++;
+        }
+        text.setLength(length);
+        return text.toString();
+    }
+}
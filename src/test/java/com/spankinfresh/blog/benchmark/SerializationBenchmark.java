@@ -0,0 +1,66 @@
+package com.spankinfresh.blog.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.spankinfresh.blog.domain.Author;
+import com.spankinfresh.blog.domain.BlogPost;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Jackson serialization of a list of {@link BlogPost}s, as returned by
+ * GET /api/articles, with small and 500KB article bodies.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SerializationBenchmark {
+
+    @Param({"200", "500000"})
+    private int contentLength;
+
+    @Param({"20"})
+    private int listSize;
+
+    private ObjectMapper objectMapper;
+    private List<BlogPost> articles;
+
+    @Setup(Level.Trial)
+    public void createArticles() {
+        // Same settings Spring Boot applies to the MVC ObjectMapper
+        objectMapper = Jackson2ObjectMapperBuilder.json()
+                .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .build();
+        Author author = new Author(1L, "First", "Last", "author@example.com");
+        articles = new ArrayList<>(listSize);
+        for (int i = 0; i < listSize; i++) {
+            articles.add(new BlogPost(i + 1, author, "category" + (i % 4), new Date(),
+                    "Title " + i, Payloads.text(contentLength, i)));
+        }
+    }
+
+    @Benchmark
+    public byte[] writeArticleList() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(articles);
+    }
+}
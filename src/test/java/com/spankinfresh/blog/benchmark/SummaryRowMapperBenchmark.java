@@ -0,0 +1,95 @@
+package com.spankinfresh.blog.benchmark;
+
+import com.spankinfresh.blog.data.BlogPostJdbcTemplateRepository;
+import com.spankinfresh.blog.domain.BlogPost;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.jdbc.core.BeanPropertyRowMapper;
+import org.springframework.jdbc.core.RowMapper;
+
+import javax.sql.rowset.CachedRowSet;
+import javax.sql.rowset.RowSetProvider;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-row cost of mapping a summary row, with the rows held in memory so
+ * the database is out of the picture. {@code beanPropertyRowMapper} is how
+ * the summary queries used to map (one new mapper per query).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SummaryRowMapperBenchmark {
+    private static final int ROWS = 1000;
+
+    private CachedRowSet rows;
+
+    @Setup(Level.Trial)
+    public void loadRows() throws SQLException {
+        try (Connection connection = DriverManager.getConnection("jdbc:h2:mem:")) {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("create table blog_post (id bigint primary key, " +
+                        "title varchar(200), category varchar(200), date_posted timestamp)");
+            }
+            try (PreparedStatement insert = connection.prepareStatement(
+                    "insert into blog_post values (?, ?, ?, ?)")) {
+                for (int i = 0; i < ROWS; i++) {
+                    insert.setLong(1, i + 1);
+                    insert.setString(2, "Title " + i);
+                    insert.setString(3, "category" + (i % 8));
+                    insert.setTimestamp(4, new Timestamp(1_600_000_000_000L - i * 60_000L));
+                    insert.addBatch();
+                }
+                insert.executeBatch();
+            }
+            try (Statement statement = connection.createStatement();
+                 ResultSet resultSet = statement.executeQuery(
+                         "select " + BlogPostJdbcTemplateRepository.SUMMARY_COLUMNS +
+                                 "from blog_post order by date_posted desc")) {
+                rows = RowSetProvider.newFactory().createCachedRowSet();
+                rows.populate(resultSet);
+            }
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void beanPropertyRowMapper(Blackhole blackhole) throws SQLException {
+        mapAll(BeanPropertyRowMapper.newInstance(BlogPost.class), blackhole);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void indexRowMapper(Blackhole blackhole) throws SQLException {
+        mapAll(BlogPostJdbcTemplateRepository.SUMMARY_ROW_MAPPER, blackhole);
+    }
+
+    private void mapAll(RowMapper<BlogPost> rowMapper, Blackhole blackhole) throws SQLException {
+        rows.beforeFirst();
+        int rowNum = 0;
+        while (rows.next()) {
+            blackhole.consume(rowMapper.mapRow(rows, rowNum++));
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package com.spankinfresh.blog.loadtest;
+
+import javax.sql.DataSource;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.Random;
+
+/**
+ * Bulk-loads authors and posts with plain JDBC batches, bypassing the
+ * application, so a million-row dataset loads in minutes. Post {@code n}
+ * (1-based) has id {@code n} and was posted {@code n - 1} minutes before
+ * {@link #NEWEST_POST}, which lets the workload build keyset cursors
+ * without asking the server.
+ */
+class DatasetSeeder {
+    static final long NEWEST_POST = 1_600_000_000_000L;
+    static final long POST_INTERVAL = 60_000L;
+
+    private static final int BATCH_SIZE = 1000;
+    // Content lengths are log-normal: median ~3K characters, a long tail
+    // of essays, capped at the 500K validation limit.
+    private static final double MEDIAN_CONTENT_LENGTH = 3000;
+    private static final double CONTENT_LENGTH_SIGMA = 1.1;
+    private static final int MAX_CONTENT_LENGTH = 500_000;
+    private static final String[] WORDS = {
+            "spring", "boot", "java", "kotlin", "database", "index", "query",
+            "latency", "throughput", "cache", "cluster", "deploy", "release",
+            "the", "a", "of", "and", "to", "with", "for", "performance",
+            "article", "blog", "writing", "review", "design", "pattern"};
+
+    private final DataSource dataSource;
+    private final Random random = new Random(42);
+    private final String corpus;
+
+    DatasetSeeder(DataSource dataSource) {
+        this.dataSource = dataSource;
+        StringBuilder text = new StringBuilder(MAX_CONTENT_LENGTH * 2);
+        while (text.length() < MAX_CONTENT_LENGTH * 2) {
+            text.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+        }
+        this.corpus = text.toString();
+    }
+
+    static String categoryName(int category) {
+        return "category-" + category;
+    }
+
+    static Timestamp datePosted(long postId) {
+        return new Timestamp(NEWEST_POST - (postId - 1) * POST_INTERVAL);
+    }
+
+    void seed(int authors, int posts, int categories) throws SQLException {
+        try (Connection connection = dataSource.getConnection()) {
+            connection.setAutoCommit(false);
+            seedAuthors(connection, authors);
+            seedPosts(connection, posts, authors, categories);
+            // Hibernate's pooled sequences must hand out ids above the seeded ones
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("alter sequence author_seq restart with " + (authors + 1000));
+                statement.execute("alter sequence blog_post_seq restart with " + (posts + 1000));
+                statement.execute("alter sequence blog_post_content_seq restart with " + (posts + 1000));
+            }
+            connection.commit();
+        }
+    }
+
+    private void seedAuthors(Connection connection, int authors) throws SQLException {
+        try (PreparedStatement insert = connection.prepareStatement(
+                "insert into author (id, first_name, last_name, email_address) values (?, ?, ?, ?)")) {
+            for (int id = 1; id <= authors; id++) {
+                insert.setLong(1, id);
+                insert.setString(2, "First" + id);
+                insert.setString(3, "Last" + id);
+                insert.setString(4, "author" + id + "@example.com");
+                insert.addBatch();
+                if (id % BATCH_SIZE == 0) {
+                    insert.executeBatch();
+                }
+            }
+            insert.executeBatch();
+            connection.commit();
+        }
+    }
+
+    private void seedPosts(Connection connection, int posts, int authors, int categories)
+            throws SQLException {
+        try (PreparedStatement content = connection.prepareStatement(
+                "insert into blog_post_content (id, content) values (?, ?)");
+             PreparedStatement post = connection.prepareStatement(
+                     "insert into blog_post (id, author_id, body_id, category, date_posted, title) " +
+                             "values (?, ?, ?, ?, ?, ?)")) {
+            for (int id = 1; id <= posts; id++) {
+                content.setLong(1, id);
+                content.setBytes(2, content().getBytes(StandardCharsets.UTF_8));
+                content.addBatch();
+                post.setLong(1, id);
+                post.setLong(2, 1 + random.nextInt(authors));
+                post.setLong(3, id);
+                post.setString(4, categoryName(skewedCategory(categories)));
+                post.setTimestamp(5, datePosted(id));
+                post.setString(6, "Post " + id + " about " + WORDS[random.nextInt(WORDS.length)]);
+                post.addBatch();
+                if (id % BATCH_SIZE == 0) {
+                    content.executeBatch();
+                    post.executeBatch();
+                    connection.commit();
+                }
+                if (id % 100_000 == 0) {
+                    System.out.printf("  seeded %,d posts%n", id);
+                }
+            }
+            content.executeBatch();
+            post.executeBatch();
+            connection.commit();
+        }
+    }
+
+    // A few categories hold most of the posts, as on a real blog
+    int skewedCategory(int categories) {
+        double r = random.nextDouble();
+        return (int) (categories * r * r * r);
+    }
+
+    private String content() {
+        double length = MEDIAN_CONTENT_LENGTH * Math.exp(CONTENT_LENGTH_SIGMA * random.nextGaussian());
+        int chars = (int) Math.max(1, Math.min(MAX_CONTENT_LENGTH, length));
+        int start = random.nextInt(corpus.length() - chars);
+        return corpus.substring(start, start + chars);
+    }
+}
@@ -0,0 +1,282 @@
+package com.spankinfresh.blog.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.spankinfresh.blog.BlogApplication;
+import com.spankinfresh.blog.data.BlogPostJdbcTemplateRepository;
+import com.spankinfresh.blog.data.PageCursor;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.web.client.ResponseErrorHandler;
+import org.springframework.web.client.RestTemplate;
+
+import javax.sql.DataSource;
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+
+/**
+ * Starts {@link BlogApplication} on a file-backed H2, seeds it and drives an
+ * open-loop mixed workload at a fixed request rate, then reports throughput
+ * and p50/p99/p999 latency per route to stdout and
+ * {@code target/loadtest-report.json}.
+ * <p>
+ * Latency is measured from when a request was scheduled, not when a worker
+ * picked it up, so a saturated server shows up as queueing time instead of a
+ * silently lower request rate.
+ * <p>
+ * Run with {@code mvn -Ploadtest test-compile exec:exec}. Settings are system
+ * properties passed through {@code -Dloadtest.args="-Dloadtest.posts=1000000 ..."}:
+ * <ul>
+ * <li>{@code loadtest.posts} (100000), {@code loadtest.authors} (10000),
+ * {@code loadtest.categories} (500)</li>
+ * <li>{@code loadtest.rate} requests per second (500), {@code loadtest.threads} (64)</li>
+ * <li>{@code loadtest.warmup} and {@code loadtest.duration} in seconds (15, 60)</li>
+ * <li>{@code loadtest.mix}, weights per route, for example
+ * {@code article=30,articles=10,category=20,summary=20,categories=15,create=5}</li>
+ * </ul>
+ */
+public class LoadGenerator {
+    private static final String DEFAULT_MIX =
+            "article=30,articles=10,category=20,summary=20,categories=15,create=5";
+    private static final int PAGE_SIZE = 20;
+    private static final long MAX_RECORDED_LATENCY = TimeUnit.MINUTES.toNanos(1);
+
+    private final int posts = Integer.getInteger("loadtest.posts", 100_000);
+    private final int authors = Integer.getInteger("loadtest.authors", 10_000);
+    private final int categories = Integer.getInteger("loadtest.categories", 500);
+    private final int rate = Integer.getInteger("loadtest.rate", 500);
+    private final int threads = Integer.getInteger("loadtest.threads", 64);
+    private final int warmupSeconds = Integer.getInteger("loadtest.warmup", 15);
+    private final int durationSeconds = Integer.getInteger("loadtest.duration", 60);
+
+    private final Map<String, Route> routes = new LinkedHashMap<>();
+    private final List<Route> weightedRoutes = new ArrayList<>();
+    private RestTemplate restTemplate;
+    private String baseUrl;
+
+    public static void main(String[] args) throws Exception {
+        new LoadGenerator().run();
+    }
+
+    private void run() throws Exception {
+        defineRoutes(System.getProperty("loadtest.mix", DEFAULT_MIX));
+        File database = new File("target/loadtest/blog");
+        // Start from an empty database every run
+        File[] previousRun = database.getParentFile().listFiles();
+        if (previousRun != null) {
+            for (File file : previousRun) {
+                Files.delete(file.toPath());
+            }
+        }
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(BlogApplication.class)
+                .run("--server.port=0",
+                        "--spring.main.banner-mode=off",
+                        "--logging.level.root=warn",
+                        "--spring.datasource.url=jdbc:h2:file:" + database.getAbsolutePath(),
+                        "--spring.jpa.hibernate.ddl-auto=create");
+        try {
+            System.out.printf("Seeding %,d posts, %,d authors, %,d categories...%n",
+                    posts, authors, categories);
+            long seedStart = System.nanoTime();
+            new DatasetSeeder(context.getBean(DataSource.class)).seed(authors, posts, categories);
+            context.getBean(BlogPostJdbcTemplateRepository.class).initializeCategories();
+            System.out.printf("Seeded in %d s%n",
+                    TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - seedStart));
+
+            baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+            // HttpURLConnection keeps only 5 idle connections per host by default
+            System.setProperty("http.maxConnections", String.valueOf(threads));
+            restTemplate = new RestTemplate();
+            restTemplate.setErrorHandler(new ResponseErrorHandler() {
+                @Override
+                public boolean hasError(ClientHttpResponse response) {
+                    return false;
+                }
+
+                @Override
+                public void handleError(ClientHttpResponse response) {
+                }
+            });
+
+            ExecutorService workers = Executors.newFixedThreadPool(threads);
+            System.out.printf("Warming up for %d s at %d req/s...%n", warmupSeconds, rate);
+            drive(workers, warmupSeconds);
+            routes.values().forEach(Route::reset);
+            System.out.printf("Measuring for %d s at %d req/s...%n", durationSeconds, rate);
+            long measuredNanos = drive(workers, durationSeconds);
+            workers.shutdown();
+            workers.awaitTermination(1, TimeUnit.MINUTES);
+            report(measuredNanos);
+        } finally {
+            context.close();
+        }
+    }
+
+    private void defineRoutes(String mix) {
+        Map<String, Route> available = new LinkedHashMap<>();
+        available.put("article", new Route("GET /api/articles/{id}",
+                random -> get("/api/articles/" + (1 + random.nextInt(posts)))));
+        available.put("articles", new Route("GET /api/articles?limit&cursor",
+                random -> get("/api/articles?limit=" + PAGE_SIZE + "&cursor=" + randomCursor(random))));
+        available.put("category", new Route("GET /api/articles/category",
+                random -> get("/api/articles/category?limit=" + PAGE_SIZE + "&categoryName="
+                        + DatasetSeeder.categoryName(random.nextInt(categories)))));
+        available.put("summary", new Route("GET /api/summary/articles",
+                random -> get("/api/summary/articles?limit=" + PAGE_SIZE + "&cursor=" + randomCursor(random))));
+        available.put("categories", new Route("GET /api/categories",
+                random -> get("/api/categories")));
+        available.put("create", new Route("POST /api/articles", this::create));
+        for (String entry : mix.split(",")) {
+            String[] weight = entry.trim().split("=");
+            Route route = available.get(weight[0]);
+            if (route == null) {
+                throw new IllegalArgumentException("Unknown route in loadtest.mix: " + weight[0]);
+            }
+            routes.put(weight[0], route);
+            for (int i = 0; i < Integer.parseInt(weight[1]); i++) {
+                weightedRoutes.add(route);
+            }
+        }
+    }
+
+    private String randomCursor(ThreadLocalRandom random) {
+        long id = 1 + random.nextInt(posts);
+        return new PageCursor(DatasetSeeder.datePosted(id), id).encode();
+    }
+
+    private int get(String path) {
+        return restTemplate.exchange(baseUrl + path, HttpMethod.GET, null, byte[].class)
+                .getStatusCodeValue();
+    }
+
+    private int create(ThreadLocalRandom random) {
+        Map<String, Object> post = new LinkedHashMap<>();
+        post.put("category", DatasetSeeder.categoryName(random.nextInt(categories)));
+        post.put("title", "Load test post");
+        post.put("content", "Written by the load generator " + random.nextLong());
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        ResponseEntity<byte[]> response = restTemplate.exchange(baseUrl + "/api/articles",
+                HttpMethod.POST, new HttpEntity<>(post, headers), byte[].class);
+        return response.getStatusCodeValue();
+    }
+
+    /**
+     * Issues requests on a fixed schedule for {@code seconds} and returns the
+     * elapsed time once every issued request has completed.
+     */
+    private long drive(ExecutorService workers, int seconds) throws InterruptedException {
+        long intervalNanos = TimeUnit.SECONDS.toNanos(1) / rate;
+        long start = System.nanoTime();
+        long end = start + TimeUnit.SECONDS.toNanos(seconds);
+        LongAdder outstanding = new LongAdder();
+        for (long scheduled = start; scheduled < end; scheduled += intervalNanos) {
+            long wait = scheduled - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            Route route = weightedRoutes.get(ThreadLocalRandom.current().nextInt(weightedRoutes.size()));
+            long intendedStart = scheduled;
+            outstanding.increment();
+            workers.execute(() -> {
+                try {
+                    route.call(intendedStart);
+                } finally {
+                    outstanding.decrement();
+                }
+            });
+        }
+        while (outstanding.sum() > 0) {
+            Thread.sleep(10);
+        }
+        return System.nanoTime() - start;
+    }
+
+    private void report(long measuredNanos) throws Exception {
+        double seconds = measuredNanos / 1e9;
+        Map<String, Object> report = new LinkedHashMap<>();
+        Map<String, Object> settings = new LinkedHashMap<>();
+        settings.put("posts", posts);
+        settings.put("authors", authors);
+        settings.put("categories", categories);
+        settings.put("targetRate", rate);
+        settings.put("threads", threads);
+        settings.put("durationSeconds", durationSeconds);
+        report.put("settings", settings);
+        List<Map<String, Object>> results = new ArrayList<>();
+        System.out.printf("%n%-34s %9s %7s %9s %9s %9s %9s %9s%n", "route", "requests",
+                "errors", "req/s", "p50 ms", "p99 ms", "p999 ms", "max ms");
+        for (Route route : routes.values()) {
+            Histogram histogram = route.latencies.getIntervalHistogram();
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("route", route.name);
+            result.put("requests", histogram.getTotalCount());
+            result.put("errors", route.errors.sum());
+            result.put("throughput", histogram.getTotalCount() / seconds);
+            result.put("p50Millis", millis(histogram.getValueAtPercentile(50)));
+            result.put("p99Millis", millis(histogram.getValueAtPercentile(99)));
+            result.put("p999Millis", millis(histogram.getValueAtPercentile(99.9)));
+            result.put("maxMillis", millis(histogram.getMaxValue()));
+            results.add(result);
+            System.out.printf("%-34s %9d %7d %9.1f %9.2f %9.2f %9.2f %9.2f%n", route.name,
+                    histogram.getTotalCount(), route.errors.sum(), result.get("throughput"),
+                    result.get("p50Millis"), result.get("p99Millis"),
+                    result.get("p999Millis"), result.get("maxMillis"));
+        }
+        report.put("routes", results);
+        File output = new File("target/loadtest-report.json");
+        new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(output, report);
+        System.out.println("Report written to " + output.getPath());
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1e6;
+    }
+
+    private static final class Route {
+        private final String name;
+        private final Function<ThreadLocalRandom, Integer> request;
+        private final Recorder latencies = new Recorder(MAX_RECORDED_LATENCY, 3);
+        private final LongAdder errors = new LongAdder();
+
+        Route(String name, Function<ThreadLocalRandom, Integer> request) {
+            this.name = name;
+            this.request = request;
+        }
+
+        void call(long intendedStart) {
+            try {
+                if (request.apply(ThreadLocalRandom.current()) >= 400) {
+                    errors.increment();
+                }
+            } catch (RuntimeException e) {
+                errors.increment();
+            }
+            latencies.recordValue(Math.min(System.nanoTime() - intendedStart, MAX_RECORDED_LATENCY));
+        }
+
+        void reset() {
+            latencies.getIntervalHistogram();
+            errors.reset();
+        }
+    }
+}
@@ -0,0 +1,8 @@
+-- Rows written while posts and authors still had IDENTITY ids, so their ids
+-- are ahead of the sequences Hibernate has just created
+insert into author (id, first_name, last_name, email_address, version)
+    values (1000, 'Ada', 'Lovelace', 'legacy@example.com', 0);
+-- content is stored as bytes, here the UTF-8 of "legacy"
+insert into blog_post_content (id, content) values (1000, X'6c6567616379');
+insert into blog_post (id, category, date_posted, title, body_id, author_id, version, view_count)
+    values (1000, 'legacy', current_timestamp, 'legacy title', 1000, 1000, 0, 0);
@@ -0,0 +1,8 @@
+-- Content stored in blog_post itself, as it was before blog_post_content
+create table author (id bigint generated by default as identity, email_address varchar(255),
+    first_name varchar(80), last_name varchar(80), primary key (id));
+create table blog_post (id bigint generated by default as identity, category varchar(200),
+    date_posted timestamp, title varchar(200), content varchar(500000) not null,
+    author_id bigint, primary key (id));
+insert into blog_post (id, category, date_posted, title, content)
+    values (1000, 'legacy', current_timestamp, 'legacy title', 'legacy content');
@@ -0,0 +1,7 @@
+-- Content stored as text, as it was before ContentConverter
+create table blog_post_content (id bigint not null, content varchar(2000000), primary key (id));
+create table blog_post (id bigint not null, category varchar(200), date_posted timestamp,
+    title varchar(200), body_id bigint not null, primary key (id));
+insert into blog_post_content (id, content) values (1000, 'legacy content');
+insert into blog_post (id, category, date_posted, title, body_id)
+    values (1000, 'legacy', current_timestamp, 'legacy title', 1000);